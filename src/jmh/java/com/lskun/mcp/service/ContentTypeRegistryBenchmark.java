@@ -0,0 +1,127 @@
+package com.lskun.mcp.service;
+
+import com.lskun.mcp.config.ContentTypeProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link ContentTypeRegistry} with the per-call HashMap lookup and string scanning it replaced.
+ * <p>
+ * Run with {@code mvn -Pjmh test-compile exec:exec -Djmh.includes=ContentTypeRegistryBenchmark}; add
+ * {@code -Djmh.args="-prof gc"} to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentTypeRegistryBenchmark {
+
+    private static final String[] KEYS = {
+            "reports/2024/summary.pdf", "state/agent-7/status.json", "assets/img/Logo.PNG",
+            "backups/db.tar", "notes/README", "data/part-0001.parquet", "src/Main.java", "video/intro.mp4"};
+
+    private static final String[] CONTENT_TYPES = {
+            "text/plain; charset=utf-8", "application/json", "application/vnd.api+json", "image/png",
+            "application/octet-stream", "Text/CSV"};
+
+    /** Extension table of the previous implementation, which rebuilt a HashMap from it on every call. */
+    private static final String[][] LEGACY_EXTENSIONS = {
+            {"txt", "text/plain"}, {"html", "text/html"}, {"htm", "text/html"}, {"xml", "text/xml"},
+            {"csv", "text/csv"}, {"md", "text/markdown"}, {"markdown", "text/markdown"}, {"json", "application/json"},
+            {"js", "application/javascript"}, {"ts", "application/typescript"}, {"css", "text/css"},
+            {"rtf", "application/rtf"}, {"yaml", "text/yaml"}, {"yml", "text/yaml"}, {"pdf", "application/pdf"},
+            {"doc", "application/msword"},
+            {"docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document"},
+            {"xls", "application/vnd.ms-excel"},
+            {"xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"},
+            {"ppt", "application/vnd.ms-powerpoint"},
+            {"pptx", "application/vnd.openxmlformats-officedocument.presentationml.presentation"},
+            {"odt", "application/vnd.oasis.opendocument.text"}, {"ods", "application/vnd.oasis.opendocument.spreadsheet"},
+            {"odp", "application/vnd.oasis.opendocument.presentation"}, {"jpg", "image/jpeg"}, {"jpeg", "image/jpeg"},
+            {"png", "image/png"}, {"gif", "image/gif"}, {"svg", "image/svg+xml"}, {"webp", "image/webp"},
+            {"ico", "image/x-icon"}, {"bmp", "image/bmp"}, {"tiff", "image/tiff"}, {"tif", "image/tiff"},
+            {"mp3", "audio/mpeg"}, {"wav", "audio/wav"}, {"ogg", "audio/ogg"}, {"m4a", "audio/mp4"},
+            {"flac", "audio/flac"}, {"aac", "audio/aac"}, {"mp4", "video/mp4"}, {"avi", "video/x-msvideo"},
+            {"webm", "video/webm"}, {"mkv", "video/x-matroska"}, {"mov", "video/quicktime"}, {"wmv", "video/x-ms-wmv"},
+            {"flv", "video/x-flv"}, {"zip", "application/zip"}, {"rar", "application/vnd.rar"},
+            {"7z", "application/x-7z-compressed"}, {"tar", "application/x-tar"}, {"gz", "application/gzip"},
+            {"ttf", "font/ttf"}, {"otf", "font/otf"}, {"woff", "font/woff"}, {"woff2", "font/woff2"},
+            {"java", "text/x-java-source"}, {"py", "text/x-python"}, {"cpp", "text/x-c++src"}, {"c", "text/x-csrc"},
+            {"cs", "text/x-csharp"}, {"php", "application/x-php"}, {"rb", "text/x-ruby"}, {"go", "text/x-go"},
+            {"swift", "text/x-swift"}, {"exe", "application/x-msdownload"}, {"bin", "application/octet-stream"},
+            {"dll", "application/x-msdownload"}, {"iso", "application/x-iso9660-image"},
+            {"apk", "application/vnd.android.package-archive"}, {"dmg", "application/x-apple-diskimage"}};
+
+    private final ContentTypeRegistry registry = new ContentTypeRegistry(new ContentTypeProperties());
+
+    @Benchmark
+    public void legacyInferContentType(Blackhole blackhole) {
+        for (String key : KEYS) {
+            blackhole.consume(legacyInferContentTypeFromKey(key));
+        }
+    }
+
+    @Benchmark
+    public void registryFromName(Blackhole blackhole) {
+        for (String key : KEYS) {
+            blackhole.consume(registry.fromName(key));
+        }
+    }
+
+    @Benchmark
+    public void legacyIsText(Blackhole blackhole) {
+        for (String contentType : CONTENT_TYPES) {
+            blackhole.consume(legacyIsTextContentType(contentType));
+        }
+    }
+
+    @Benchmark
+    public void registryIsText(Blackhole blackhole) {
+        for (String contentType : CONTENT_TYPES) {
+            blackhole.consume(registry.isText(contentType));
+        }
+    }
+
+    private static String legacyInferContentTypeFromKey(String key) {
+        String extension = "";
+        int lastDot = key.lastIndexOf('.');
+        if (lastDot > 0) {
+            extension = key.substring(lastDot + 1).toLowerCase();
+        }
+        Map<String, String> extensionToMimeType = new HashMap<>();
+        for (String[] entry : LEGACY_EXTENSIONS) {
+            extensionToMimeType.put(entry[0], entry[1]);
+        }
+        return extensionToMimeType.getOrDefault(extension, "application/octet-stream");
+    }
+
+    private static boolean legacyIsTextContentType(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        contentType = contentType.toLowerCase();
+        return contentType.startsWith("text/") ||
+               contentType.equals("application/json") ||
+               contentType.equals("application/xml") ||
+               contentType.equals("application/javascript") ||
+               contentType.equals("application/typescript") ||
+               contentType.equals("application/xhtml+xml") ||
+               contentType.equals("application/x-www-form-urlencoded") ||
+               contentType.contains("+json") ||
+               contentType.contains("+xml");
+    }
+}
@@ -0,0 +1,47 @@
+package com.lskun.mcp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Initial bandwidth limits of the transfer scheduler; all limits are in bytes per second and 0 means unlimited.
+ * The limits can be changed at runtime through the {@code setBandwidthLimit} tool.
+ */
+@ConfigurationProperties("r2.bandwidth")
+public class BandwidthProperties {
+
+    /** Cap shared by all transfers of all profiles. */
+    private long globalBytesPerSecond;
+
+    /** Caps per bucket name, applied in addition to the global cap. */
+    private Map<String, Long> bucketBytesPerSecond = new LinkedHashMap<>();
+
+    /** Request and response bodies up to this size are interactive and are served before bulk transfers. */
+    private long interactiveMaxBytes = 1024 * 1024;
+
+    public long getGlobalBytesPerSecond() {
+        return globalBytesPerSecond;
+    }
+
+    public void setGlobalBytesPerSecond(long globalBytesPerSecond) {
+        this.globalBytesPerSecond = globalBytesPerSecond;
+    }
+
+    public Map<String, Long> getBucketBytesPerSecond() {
+        return bucketBytesPerSecond;
+    }
+
+    public void setBucketBytesPerSecond(Map<String, Long> bucketBytesPerSecond) {
+        this.bucketBytesPerSecond = bucketBytesPerSecond;
+    }
+
+    public long getInteractiveMaxBytes() {
+        return interactiveMaxBytes;
+    }
+
+    public void setInteractiveMaxBytes(long interactiveMaxBytes) {
+        this.interactiveMaxBytes = interactiveMaxBytes;
+    }
+}
@@ -0,0 +1,49 @@
+package com.lskun.mcp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Additions to the built-in content type table. Extensions are matched case-insensitively and
+ * entries here override the built-in mapping of the same extension.
+ */
+@ConfigurationProperties("r2.content-types")
+public class ContentTypeProperties {
+
+    /** Extra or overriding extension to MIME type mappings, e.g. {@code parquet: application/vnd.apache.parquet}. */
+    private Map<String, String> extensions = new LinkedHashMap<>();
+
+    /** Extensions whose content is sniffed from the first bytes before the extension mapping is used. */
+    private List<String> ambiguousExtensions = new ArrayList<>(List.of("ts", "bin", "dat"));
+
+    /** Extra MIME types, besides text/*, JSON and XML types, that downloadObject returns as text. */
+    private List<String> textTypes = new ArrayList<>();
+
+    public Map<String, String> getExtensions() {
+        return extensions;
+    }
+
+    public void setExtensions(Map<String, String> extensions) {
+        this.extensions = extensions;
+    }
+
+    public List<String> getAmbiguousExtensions() {
+        return ambiguousExtensions;
+    }
+
+    public void setAmbiguousExtensions(List<String> ambiguousExtensions) {
+        this.ambiguousExtensions = ambiguousExtensions;
+    }
+
+    public List<String> getTextTypes() {
+        return textTypes;
+    }
+
+    public void setTextTypes(List<String> textTypes) {
+        this.textTypes = textTypes;
+    }
+}
@@ -1,16 +1,42 @@
 package com.lskun.mcp.config;
 
+import com.lskun.mcp.service.R2ArchiveService;
+import com.lskun.mcp.service.R2BatchMetadataService;
+import com.lskun.mcp.service.R2ClientRegistry;
 import com.lskun.mcp.service.R2ServiceClient;
+import com.lskun.mcp.service.R2TransferJobService;
+import com.lskun.mcp.service.R2UsageService;
+import com.lskun.mcp.service.R2WriteBehindService;
+import com.lskun.mcp.service.TracingToolCallback;
+import com.lskun.mcp.service.TransferScheduler;
+import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.ai.tool.method.MethodToolCallbackProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Arrays;
+
 @Configuration
+@EnableConfigurationProperties({R2Properties.class, BandwidthProperties.class, ContentTypeProperties.class})
 public class McpConfiguration {
 
     @Bean
-    public ToolCallbackProvider r2Tools(R2ServiceClient r2ServiceClient) {
-        return MethodToolCallbackProvider.builder().toolObjects(r2ServiceClient).build();
+    public ToolCallbackProvider r2Tools(R2ClientRegistry r2ClientRegistry, R2ServiceClient r2ServiceClient,
+                                   R2UsageService r2UsageService, R2ArchiveService r2ArchiveService,
+                                   R2BatchMetadataService r2BatchMetadataService,
+                                   R2TransferJobService r2TransferJobService, TransferScheduler transferScheduler,
+                                   R2WriteBehindService r2WriteBehindService) {
+        ToolCallback[] callbacks = MethodToolCallbackProvider.builder()
+                .toolObjects(r2ClientRegistry, r2ServiceClient, r2UsageService, r2ArchiveService, r2BatchMetadataService,
+                        r2TransferJobService, transferScheduler, r2WriteBehindService)
+                .build()
+                .getToolCallbacks();
+        // 每次工具调用记录一个JFR事件
+        ToolCallback[] traced = Arrays.stream(callbacks)
+                .map(TracingToolCallback::new)
+                .toArray(ToolCallback[]::new);
+        return ToolCallbackProvider.from(traced);
     }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.lskun.mcp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cloudflare R2 connection settings.
+ * <p>
+ * The top level {@code r2.access-key-id}, {@code r2.secret-access-key} and {@code r2.endpoint}
+ * describe the {@code default} profile. Further accounts are configured as named profiles, e.g.
+ * <pre>
+ * r2.profiles.archive.access-key-id=...
+ * r2.profiles.archive.secret-access-key=...
+ * r2.profiles.archive.endpoint=https://&lt;account-id&gt;.r2.cloudflarestorage.com
+ * r2.profiles.archive.max-connections=20
+ * </pre>
+ * {@code r2.max-total-connections} caps the connections of all profiles together: it is split evenly
+ * across the configured profiles, and each profile's pool is the smaller of its share and its own
+ * {@code max-connections}.
+ */
+@ConfigurationProperties(prefix = "r2")
+public class R2Properties extends R2ProfileProperties {
+
+    private Map<String, R2ProfileProperties> profiles = new LinkedHashMap<>();
+    private int maxTotalConnections = 100;
+
+    public Map<String, R2ProfileProperties> getProfiles() {
+        return profiles;
+    }
+
+    public void setProfiles(Map<String, R2ProfileProperties> profiles) {
+        this.profiles = profiles;
+    }
+
+    public int getMaxTotalConnections() {
+        return maxTotalConnections;
+    }
+
+    public void setMaxTotalConnections(int maxTotalConnections) {
+        this.maxTotalConnections = maxTotalConnections;
+    }
+}
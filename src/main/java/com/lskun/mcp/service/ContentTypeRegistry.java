@@ -0,0 +1,534 @@
+package com.lskun.mcp.service;
+
+import com.lskun.mcp.config.ContentTypeProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps object keys and file names to MIME types and decides which MIME types are returned as text.
+ * <p>
+ * The tables are built once at startup from the built-in mappings and {@code r2.content-types.*}, and
+ * lookups only read the key in place (no substring, lower-casing or map allocation). When a name has no
+ * known extension, or one listed in {@code r2.content-types.ambiguous-extensions}, the type is sniffed
+ * from the first {@link #SNIFF_LENGTH} bytes of the content: binary signatures win over the extension,
+ * while generic text only replaces an unknown extension.
+ */
+@Component
+public class ContentTypeRegistry {
+
+    public static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    /** Number of leading bytes examined by {@link #sniff(byte[], int)}. */
+    static final int SNIFF_LENGTH = 512;
+
+    static final String TEXT_PLAIN = "text/plain";
+
+    private static final Map<String, String> BUILT_IN_EXTENSIONS = new LinkedHashMap<>();
+    // 与原有的文本判断保持一致；其他类型（如application/x-ndjson、application/yaml）通过r2.content-types.text-types配置
+    private static final List<String> BUILT_IN_TEXT_TYPES = List.of(
+            "application/json",
+            "application/xml",
+            "application/javascript",
+            "application/typescript",
+            "application/xhtml+xml",
+            "application/x-www-form-urlencoded");
+    private static final List<Signature> SIGNATURES = new ArrayList<>();
+
+    static {
+        // 文本文件
+        extension("text/plain", "txt", "log", "ini");
+        extension("text/html", "html", "htm");
+        extension("text/xml", "xml");
+        extension("text/csv", "csv");
+        extension("text/tab-separated-values", "tsv");
+        extension("text/markdown", "md", "markdown");
+        extension("application/json", "json");
+        extension("application/x-ndjson", "jsonl", "ndjson");
+        extension("application/javascript", "js", "mjs");
+        extension("application/typescript", "ts");
+        extension("text/css", "css");
+        extension("application/rtf", "rtf");
+        extension("text/yaml", "yaml", "yml");
+        extension("application/toml", "toml");
+        extension("application/sql", "sql");
+        extension("application/x-sh", "sh");
+
+        // 二进制文档文件
+        extension("application/pdf", "pdf");
+        extension("application/msword", "doc");
+        extension("application/vnd.openxmlformats-officedocument.wordprocessingml.document", "docx");
+        extension("application/vnd.ms-excel", "xls");
+        extension("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx");
+        extension("application/vnd.ms-powerpoint", "ppt");
+        extension("application/vnd.openxmlformats-officedocument.presentationml.presentation", "pptx");
+        extension("application/vnd.oasis.opendocument.text", "odt");
+        extension("application/vnd.oasis.opendocument.spreadsheet", "ods");
+        extension("application/vnd.oasis.opendocument.presentation", "odp");
+
+        // 图片文件
+        extension("image/jpeg", "jpg", "jpeg");
+        extension("image/png", "png");
+        extension("image/gif", "gif");
+        extension("image/svg+xml", "svg");
+        extension("image/webp", "webp");
+        extension("image/avif", "avif");
+        extension("image/x-icon", "ico");
+        extension("image/bmp", "bmp");
+        extension("image/tiff", "tiff", "tif");
+
+        // 音频文件
+        extension("audio/mpeg", "mp3");
+        extension("audio/wav", "wav");
+        extension("audio/ogg", "ogg");
+        extension("audio/mp4", "m4a");
+        extension("audio/flac", "flac");
+        extension("audio/aac", "aac");
+
+        // 视频文件
+        extension("video/mp4", "mp4");
+        extension("video/x-msvideo", "avi");
+        extension("video/webm", "webm");
+        extension("video/x-matroska", "mkv");
+        extension("video/quicktime", "mov");
+        extension("video/x-ms-wmv", "wmv");
+        extension("video/x-flv", "flv");
+
+        // 压缩文件
+        extension("application/zip", "zip");
+        extension("application/vnd.rar", "rar");
+        extension("application/x-7z-compressed", "7z");
+        extension("application/x-tar", "tar");
+        extension("application/gzip", "gz");
+
+        // 字体文件
+        extension("font/ttf", "ttf");
+        extension("font/otf", "otf");
+        extension("font/woff", "woff");
+        extension("font/woff2", "woff2");
+
+        // 代码和编程文件
+        extension("text/x-java-source", "java");
+        extension("text/x-python", "py");
+        extension("text/x-c++src", "cpp");
+        extension("text/x-csrc", "c");
+        extension("text/x-csharp", "cs");
+        extension("application/x-php", "php");
+        extension("text/x-ruby", "rb");
+        extension("text/x-go", "go");
+        extension("text/x-swift", "swift");
+
+        // 其他常见文件类型
+        extension("application/x-msdownload", "exe", "dll");
+        extension("application/octet-stream", "bin");
+        extension("application/x-iso9660-image", "iso");
+        extension("application/vnd.android.package-archive", "apk");
+        extension("application/x-apple-diskimage", "dmg");
+        extension("application/wasm", "wasm");
+
+        // 魔数签名，按顺序匹配，-1表示任意字节；更具体的签名排在前面
+        signature("application/pdf", 0, "%PDF-");
+        signature("image/png", 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A);
+        signature("image/jpeg", 0, 0xFF, 0xD8, 0xFF);
+        signature("image/gif", 0, "GIF87a");
+        signature("image/gif", 0, "GIF89a");
+        signature("image/webp", 0, 'R', 'I', 'F', 'F', -1, -1, -1, -1, 'W', 'E', 'B', 'P');
+        signature("audio/wav", 0, 'R', 'I', 'F', 'F', -1, -1, -1, -1, 'W', 'A', 'V', 'E');
+        signature("video/x-msvideo", 0, 'R', 'I', 'F', 'F', -1, -1, -1, -1, 'A', 'V', 'I', ' ');
+        signature("image/bmp", 0, 'B', 'M', -1, -1, -1, -1, 0x00, 0x00, 0x00, 0x00);
+        signature("image/tiff", 0, 'I', 'I', 0x2A, 0x00);
+        signature("image/tiff", 0, 'M', 'M', 0x00, 0x2A);
+        signature("image/x-icon", 0, 0x00, 0x00, 0x01, 0x00);
+        signature("image/avif", 4, "ftypavif");
+        signature("video/quicktime", 4, "ftypqt  ");
+        signature("audio/mp4", 4, "ftypM4A ");
+        signature("video/mp4", 4, "ftyp");
+        signature("audio/mpeg", 0, "ID3");
+        signature("audio/ogg", 0, "OggS");
+        signature("audio/flac", 0, "fLaC");
+        signature("video/x-flv", 0, 'F', 'L', 'V', 0x01);
+        signature("application/zip", 0, 'P', 'K', 0x03, 0x04);
+        signature("application/gzip", 0, 0x1F, 0x8B);
+        signature("application/x-7z-compressed", 0, '7', 'z', 0xBC, 0xAF, 0x27, 0x1C);
+        signature("application/vnd.rar", 0, 'R', 'a', 'r', '!', 0x1A, 0x07);
+        signature("application/x-tar", 257, "ustar");
+        signature("font/woff", 0, "wOFF");
+        signature("font/woff2", 0, "wOF2");
+        signature("font/otf", 0, "OTTO");
+        signature("font/ttf", 0, 0x00, 0x01, 0x00, 0x00, 0x00);
+        signature("application/wasm", 0, 0x00, 'a', 's', 'm');
+        signature("application/x-msdownload", 0, "MZ");
+        signature("application/x-executable", 0, 0x7F, 'E', 'L', 'F');
+    }
+
+    private static void extension(String contentType, String... extensions) {
+        for (String extension : extensions) {
+            BUILT_IN_EXTENSIONS.put(extension, contentType);
+        }
+    }
+
+    private static void signature(String contentType, int offset, String magic) {
+        int[] pattern = new int[magic.length()];
+        for (int i = 0; i < pattern.length; i++) {
+            pattern[i] = magic.charAt(i);
+        }
+        SIGNATURES.add(new Signature(contentType, offset, pattern));
+    }
+
+    private static void signature(String contentType, int offset, int... pattern) {
+        SIGNATURES.add(new Signature(contentType, offset, pattern));
+    }
+
+    private record Signature(String contentType, int offset, int[] pattern) {
+
+        boolean matches(byte[] head, int length) {
+            if (offset + pattern.length > length) {
+                return false;
+            }
+            for (int i = 0; i < pattern.length; i++) {
+                if (pattern[i] >= 0 && (head[offset + i] & 0xFF) != pattern[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final CaseInsensitiveTable extensions;
+    private final String[] extensionTypes;
+    private final boolean[] ambiguous;
+    private final CaseInsensitiveTable textTypes;
+
+    public ContentTypeRegistry(ContentTypeProperties properties) {
+        Map<String, String> mappings = new LinkedHashMap<>(BUILT_IN_EXTENSIONS);
+        properties.getExtensions().forEach((extension, contentType) ->
+                mappings.put(normalizeExtension(extension), contentType.trim()));
+        Set<String> ambiguousExtensions = new LinkedHashSet<>();
+        properties.getAmbiguousExtensions().forEach(extension -> ambiguousExtensions.add(normalizeExtension(extension)));
+        // 只声明为有歧义、没有映射的扩展名同样需要嗅探
+        ambiguousExtensions.forEach(extension -> mappings.putIfAbsent(extension, DEFAULT_CONTENT_TYPE));
+
+        List<String> names = new ArrayList<>(mappings.keySet());
+        this.extensions = new CaseInsensitiveTable(names);
+        this.extensionTypes = new String[names.size()];
+        this.ambiguous = new boolean[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            extensionTypes[i] = mappings.get(names.get(i)).intern();
+            ambiguous[i] = ambiguousExtensions.contains(names.get(i));
+        }
+
+        Set<String> text = new LinkedHashSet<>(BUILT_IN_TEXT_TYPES);
+        properties.getTextTypes().forEach(type -> text.add(type.trim().toLowerCase(Locale.ROOT)));
+        this.textTypes = new CaseInsensitiveTable(new ArrayList<>(text));
+    }
+
+    private static String normalizeExtension(String extension) {
+        String normalized = extension.trim().toLowerCase(Locale.ROOT);
+        return normalized.startsWith(".") ? normalized.substring(1) : normalized;
+    }
+
+    /**
+     * Returns the MIME type of the extension of {@code name}, or {@link #DEFAULT_CONTENT_TYPE} if it has none
+     * or an unknown one. Does not look at the content.
+     */
+    public String fromName(String name) {
+        int index = extensionIndex(name);
+        return index < 0 ? DEFAULT_CONTENT_TYPE : extensionTypes[index];
+    }
+
+    /**
+     * Whether {@link #detect(String, byte[], int)} would look at the content of {@code name}.
+     */
+    public boolean needsSniffing(String name) {
+        int index = extensionIndex(name);
+        return index < 0 || ambiguous[index];
+    }
+
+    /**
+     * Returns the MIME type of {@code name}, sniffing {@code head} (the first {@code length} bytes of the
+     * content, may be {@code null}) when the extension is missing or ambiguous. Only the first
+     * {@link #SNIFF_LENGTH} bytes are examined, however large the buffer.
+     */
+    public String detect(String name, byte[] head, int length) {
+        int index = extensionIndex(name);
+        if (index >= 0 && !ambiguous[index]) {
+            return extensionTypes[index];
+        }
+        String sniffed = head == null ? null : sniff(head, Math.min(Math.min(length, head.length), SNIFF_LENGTH));
+        // 有扩展名映射时，泛化的纯文本判断不覆盖扩展名（如TypeScript源码的.ts）
+        if (sniffed != null && !(index >= 0 && TEXT_PLAIN.equals(sniffed))) {
+            return sniffed;
+        }
+        return index >= 0 ? extensionTypes[index] : DEFAULT_CONTENT_TYPE;
+    }
+
+    /**
+     * Returns the MIME type of a local file, reading its first bytes only when the name is not enough.
+     */
+    public String detect(String name, Path file) {
+        if (!needsSniffing(name)) {
+            return fromName(name);
+        }
+        byte[] head = new byte[SNIFF_LENGTH];
+        try (InputStream in = Files.newInputStream(file)) {
+            return detect(name, head, in.readNBytes(head, 0, head.length));
+        } catch (IOException e) {
+            return fromName(name);
+        }
+    }
+
+    /**
+     * Whether content of this type is returned as text: text/*, the built-in and configured text types
+     * and any +json or +xml type. Parameters such as charset are ignored.
+     */
+    public boolean isText(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        int start = 0;
+        int end = contentType.indexOf(';');
+        if (end < 0) {
+            end = contentType.length();
+        }
+        while (start < end && contentType.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && contentType.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return matchesAscii(contentType, start, end, "text/")
+                || textTypes.indexOf(contentType, start, end) >= 0
+                || matchesAscii(contentType, end - 5, end, "+json")
+                || matchesAscii(contentType, end - 4, end, "+xml");
+    }
+
+    /**
+     * Whether {@code value} holds the lower-case ASCII {@code literal} at {@code offset}, ignoring ASCII case.
+     */
+    private static boolean matchesAscii(String value, int offset, int end, String literal) {
+        if (offset < 0 || offset + literal.length() > end) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (CaseInsensitiveTable.lower(value.charAt(offset + i)) != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int extensionIndex(String name) {
+        if (name == null) {
+            return -1;
+        }
+        int dot = name.lastIndexOf('.');
+        int slash = name.lastIndexOf('/');
+        // 点号必须位于最后一段路径中且不是首字符（.bashrc之类的隐藏文件没有扩展名）
+        if (dot <= slash + 1 || dot == name.length() - 1) {
+            return -1;
+        }
+        return extensions.indexOf(name, dot + 1, name.length());
+    }
+
+    /**
+     * Guesses the MIME type from the first bytes of the content, or returns {@code null} if nothing matches.
+     * Content that decodes as UTF-8 (or carries a UTF-16 byte order mark) without control characters is
+     * {@link #TEXT_PLAIN} unless it starts like JSON, HTML, XML or SVG.
+     */
+    static String sniff(byte[] head, int length) {
+        if (length <= 0) {
+            return null;
+        }
+        for (Signature signature : SIGNATURES) {
+            if (signature.matches(head, length)) {
+                return signature.contentType();
+            }
+        }
+        int b0 = head[0] & 0xFF;
+        int b1 = length > 1 ? head[1] & 0xFF : 0;
+        if ((b0 == 0xFE && b1 == 0xFF) || (b0 == 0xFF && b1 == 0xFE)) {
+            return TEXT_PLAIN;
+        }
+        if (b0 == 0x1A && b1 == 0x45 && length > 3 && (head[2] & 0xFF) == 0xDF && (head[3] & 0xFF) == 0xA3) {
+            return indexOf(head, Math.min(length, 64), "webm") >= 0 ? "video/webm" : "video/x-matroska";
+        }
+        if (b0 == 0xFF && (b1 & 0xE0) == 0xE0) {
+            // MPEG音频帧同步字；ADTS封装的AAC层字段为0
+            return (b1 & 0x06) == 0 ? "audio/aac" : "audio/mpeg";
+        }
+        if (b0 == 0x47 && length > 188 && head[188] == 0x47) {
+            return "video/mp2t";
+        }
+        int start = b0 == 0xEF && b1 == 0xBB && length > 2 && (head[2] & 0xFF) == 0xBF ? 3 : 0;
+        if (!isText(head, start, length)) {
+            return null;
+        }
+        while (start < length && (head[start] == ' ' || head[start] == '\t' || head[start] == '\r' || head[start] == '\n')) {
+            start++;
+        }
+        if (start == length) {
+            return TEXT_PLAIN;
+        }
+        if (head[start] == '{' || head[start] == '[') {
+            return "application/json";
+        }
+        if (startsWithIgnoreCase(head, length, start, "<svg")) {
+            return "image/svg+xml";
+        }
+        if (startsWithIgnoreCase(head, length, start, "<!doctype html") || startsWithIgnoreCase(head, length, start, "<html")) {
+            return "text/html";
+        }
+        if (startsWithIgnoreCase(head, length, start, "<?xml")) {
+            return indexOf(head, length, "<svg") >= 0 ? "image/svg+xml" : "application/xml";
+        }
+        return TEXT_PLAIN;
+    }
+
+    /**
+     * Whether the bytes are well-formed UTF-8 without control characters other than whitespace; a multi-byte
+     * sequence cut off at the end of the sniffed range is accepted.
+     */
+    private static boolean isText(byte[] head, int start, int length) {
+        int i = start;
+        while (i < length) {
+            int b = head[i] & 0xFF;
+            if (b < 0x80) {
+                if (b < 0x20 && b != '\t' && b != '\n' && b != '\r' && b != '\f' && b != 0x1B) {
+                    return false;
+                }
+                if (b == 0x7F) {
+                    return false;
+                }
+                i++;
+                continue;
+            }
+            int continuation;
+            if (b >= 0xC2 && b <= 0xDF) {
+                continuation = 1;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                continuation = 2;
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                continuation = 3;
+            } else {
+                return false;
+            }
+            for (int j = 1; j <= continuation; j++) {
+                if (i + j >= length) {
+                    return true;
+                }
+                if ((head[i + j] & 0xC0) != 0x80) {
+                    return false;
+                }
+            }
+            i += continuation + 1;
+        }
+        return true;
+    }
+
+    private static boolean startsWithIgnoreCase(byte[] head, int length, int offset, String prefix) {
+        if (offset + prefix.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase((char) (head[offset + i] & 0xFF)) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] head, int length, String ascii) {
+        outer:
+        for (int i = 0; i + ascii.length() <= length; i++) {
+            for (int j = 0; j < ascii.length(); j++) {
+                if (head[i + j] != ascii.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Open-addressing set of lower-case ASCII strings that can be probed with a region of a string,
+     * ignoring ASCII case, without allocating. The hash only samples the length and three characters,
+     * so a probe costs the same for long MIME types as for short extensions.
+     */
+    static final class CaseInsensitiveTable {
+
+        private final String[] keys;
+        private final int[] indexes;
+        private final int mask;
+
+        CaseInsensitiveTable(List<String> entries) {
+            int capacity = Integer.highestOneBit(Math.max(16, entries.size() * 4) - 1) << 1;
+            this.keys = new String[capacity];
+            this.indexes = new int[capacity];
+            this.mask = capacity - 1;
+            for (int i = 0; i < entries.size(); i++) {
+                String key = entries.get(i).toLowerCase(Locale.ROOT);
+                int slot = hash(key, 0, key.length()) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                indexes[slot] = i;
+            }
+        }
+
+        /**
+         * Returns the position of {@code value[from, to)} in the entry list, or -1.
+         */
+        int indexOf(String value, int from, int to) {
+            int slot = hash(value, from, to) & mask;
+            String key;
+            while ((key = keys[slot]) != null) {
+                if (equalsIgnoreCase(key, value, from, to)) {
+                    return indexes[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        // 只取长度及首、中、尾字符计算哈希，冲突由线性探测处理
+        private static int hash(String value, int from, int to) {
+            int length = to - from;
+            if (length == 0) {
+                return 0;
+            }
+            int h = length;
+            h = 31 * h + lower(value.charAt(from));
+            h = 31 * h + lower(value.charAt(from + length / 2));
+            h = 31 * h + lower(value.charAt(to - 1));
+            return h ^ (h >>> 16);
+        }
+
+        private static boolean equalsIgnoreCase(String key, String value, int from, int to) {
+            if (key.length() != to - from) {
+                return false;
+            }
+            for (int i = 0; i < key.length(); i++) {
+                if (key.charAt(i) != lower(value.charAt(from + i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static char lower(char c) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+    }
+}
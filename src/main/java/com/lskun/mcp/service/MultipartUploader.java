@@ -0,0 +1,151 @@
+package com.lskun.mcp.service;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Uploads a sequential stream of unknown length as an S3 multipart upload with parts sent in parallel.
+ * <p>
+ * Parts are read from the stream one after another and handed to the executor; the shared
+ * {@link Semaphore} bounds how many part buffers exist at once, which keeps memory at
+ * {@code permits * partSize} no matter how large the stream is. The upload is aborted on failure.
+ */
+final class MultipartUploader {
+
+    /** Smallest part size S3 accepts for all but the last part. */
+    static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    private MultipartUploader() {
+    }
+
+    /**
+     * @param firstPart       bytes already read from the start of the stream (at least {@link #MIN_PART_SIZE} unless
+     *                        the stream ends there); sent as part 1
+     * @param firstPartLength number of valid bytes in {@code firstPart}
+     * @param rest            remainder of the stream
+     * @param inFlight        bounds the part buffers held at once; one permit must already be held for
+     *                        {@code firstPart}, and it is released once that part is uploaded
+     * @return the ETag of the completed object
+     */
+    static String upload(S3Client s3Client, ExecutorService executor, Semaphore inFlight,
+                         String bucketName, String key, String contentType,
+                         byte[] firstPart, int firstPartLength, InputStream rest, int partSize)
+            throws IOException, InterruptedException {
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .build()).uploadId();
+
+        List<Future<CompletedPart>> parts = new ArrayList<>();
+        boolean permitHeld = true;
+        try {
+            byte[] buffer = firstPart;
+            int length = firstPartLength;
+            int partNumber = 1;
+            while (true) {
+                failFast(parts);
+                parts.add(submitPart(s3Client, executor, inFlight, bucketName, key, uploadId, partNumber, buffer, length));
+                permitHeld = false;
+
+                inFlight.acquire();
+                permitHeld = true;
+                buffer = new byte[Math.max(partSize, MIN_PART_SIZE)];
+                length = rest.readNBytes(buffer, 0, buffer.length);
+                if (length == 0) {
+                    break;
+                }
+                partNumber++;
+            }
+            inFlight.release();
+            permitHeld = false;
+
+            List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+            for (Future<CompletedPart> part : parts) {
+                completedParts.add(part.get());
+            }
+            return s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                    .build()).eTag();
+        } catch (ExecutionException e) {
+            abort(s3Client, bucketName, key, uploadId, parts);
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Failed to upload part of '" + key + "': " + e.getCause().getMessage(), e.getCause());
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            abort(s3Client, bucketName, key, uploadId, parts);
+            throw e;
+        } finally {
+            if (permitHeld) {
+                inFlight.release();
+            }
+        }
+    }
+
+    private static Future<CompletedPart> submitPart(S3Client s3Client, ExecutorService executor, Semaphore inFlight,
+                                                    String bucketName, String key, String uploadId,
+                                                    int partNumber, byte[] buffer, int length) {
+        try {
+            return executor.submit(() -> {
+                try {
+                    String eTag = s3Client.uploadPart(UploadPartRequest.builder()
+                                    .bucket(bucketName)
+                                    .key(key)
+                                    .uploadId(uploadId)
+                                    .partNumber(partNumber)
+                                    .contentLength((long) length)
+                                    .build(),
+                            RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, length), length)).eTag();
+                    return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private static void failFast(List<Future<CompletedPart>> parts) throws ExecutionException, InterruptedException {
+        for (Future<CompletedPart> part : parts) {
+            if (part.isDone()) {
+                part.get();
+            }
+        }
+    }
+
+    private static void abort(S3Client s3Client, String bucketName, String key, String uploadId,
+                              List<Future<CompletedPart>> parts) {
+        parts.forEach(part -> part.cancel(true));
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (RuntimeException e) {
+            // 中止失败不影响原始异常的抛出，未完成的分段会由存储桶生命周期规则清理
+        }
+    }
+}
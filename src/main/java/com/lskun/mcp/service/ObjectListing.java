@@ -0,0 +1,129 @@
+package com.lskun.mcp.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Typed, projectable encodings of an object listing.
+ * <p>
+ * Listings used to be returned as one {@code HashMap<String, String>} per object with the size
+ * and timestamp stringified. The encodings here only materialize the projected fields and offer
+ * two denser wire formats for large listings: NDJSON (one object per line) and columnar
+ * (one array per field).
+ */
+public final class ObjectListing {
+
+    private ObjectListing() {
+    }
+
+    /**
+     * One listed object; fields outside the projection are {@code null} and omitted from JSON.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Entry(String key, Long size, String lastModified) {
+    }
+
+    /**
+     * Column oriented listing: the i-th element of every present array describes the same object.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Columns(int count, List<String> key, long[] size, List<String> lastModified) {
+    }
+
+    public enum Format {
+        JSON, NDJSON, COLUMNAR;
+
+        static Format parse(String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return JSON;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid format: " + value + ". Must be 'json', 'ndjson', or 'columnar'.");
+            }
+        }
+    }
+
+    /**
+     * Which fields to emit besides the key, which is always included.
+     */
+    public record Projection(boolean size, boolean lastModified) {
+
+        public static final Projection ALL = new Projection(true, true);
+
+        static Projection parse(String fields) {
+            if (fields == null || fields.trim().isEmpty()) {
+                return ALL;
+            }
+            boolean size = false;
+            boolean lastModified = false;
+            for (String field : fields.split(",")) {
+                switch (field.trim()) {
+                    case "key", "" -> {
+                    }
+                    case "size" -> size = true;
+                    case "lastModified" -> lastModified = true;
+                    default -> throw new IllegalArgumentException("Invalid field: " + field.trim()
+                            + ". Must be a comma separated list of 'key', 'size', 'lastModified'.");
+                }
+            }
+            return new Projection(size, lastModified);
+        }
+    }
+
+    static List<Entry> toEntries(List<S3Object> objects, Projection projection) {
+        List<Entry> entries = new ArrayList<>(objects.size());
+        for (S3Object s3Object : objects) {
+            entries.add(new Entry(
+                    s3Object.key(),
+                    projection.size() ? s3Object.size() : null,
+                    projection.lastModified() ? s3Object.lastModified().toString() : null));
+        }
+        return entries;
+    }
+
+    static Columns toColumns(List<S3Object> objects, Projection projection) {
+        int count = objects.size();
+        List<String> keys = new ArrayList<>(count);
+        long[] sizes = projection.size() ? new long[count] : null;
+        List<String> lastModified = projection.lastModified() ? new ArrayList<>(count) : null;
+        for (int i = 0; i < count; i++) {
+            S3Object s3Object = objects.get(i);
+            keys.add(s3Object.key());
+            if (sizes != null) {
+                sizes[i] = s3Object.size();
+            }
+            if (lastModified != null) {
+                lastModified.add(s3Object.lastModified().toString());
+            }
+        }
+        return new Columns(count, keys, sizes, lastModified);
+    }
+
+    /**
+     * Writes one compact JSON object per line straight into a single buffer.
+     */
+    static String toNdjson(List<S3Object> objects, Projection projection) {
+        JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+        StringBuilder out = new StringBuilder(objects.size() * (projection.lastModified() ? 96 : 48));
+        for (S3Object s3Object : objects) {
+            out.append("{\"key\":\"");
+            encoder.quoteAsString(s3Object.key(), out);
+            out.append('"');
+            if (projection.size()) {
+                out.append(",\"size\":").append(s3Object.size());
+            }
+            if (projection.lastModified()) {
+                out.append(",\"lastModified\":\"").append(s3Object.lastModified()).append('"');
+            }
+            out.append("}\n");
+        }
+        return out.toString();
+    }
+}
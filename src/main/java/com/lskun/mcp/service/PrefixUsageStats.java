@@ -0,0 +1,131 @@
+package com.lskun.mcp.service;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Usage statistics for a single prefix: object count, total bytes, a size histogram and
+ * a last-modified histogram bucketed by calendar month (UTC).
+ * <p>
+ * The class is mutable so it can be accumulated while paging through a listing, and is
+ * persisted as part of a {@link UsageSnapshot}.
+ */
+public class PrefixUsageStats {
+
+    /** Upper bounds (exclusive) of the size histogram buckets; the last bucket is open ended. */
+    static final long[] SIZE_BOUNDS = {
+            1L << 10, 64L << 10, 1L << 20, 16L << 20, 128L << 20, 1L << 30
+    };
+
+    static final String[] SIZE_LABELS = {
+            "<1KB", "<64KB", "<1MB", "<16MB", "<128MB", "<1GB", ">=1GB"
+    };
+
+    private static final DateTimeFormatter MONTH_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM").withZone(ZoneOffset.UTC);
+
+    private long objectCount;
+    private long totalBytes;
+    /** Newest lastModified seen under the prefix, in epoch millis; the change watermark. */
+    private long lastModifiedWatermark;
+    /** When the prefix was last listed, in epoch millis. */
+    private long listedAt;
+    private long[] sizeHistogram = new long[SIZE_LABELS.length];
+    private TreeMap<String, Long> monthHistogram = new TreeMap<>();
+
+    public void add(long size, Instant lastModified) {
+        objectCount++;
+        totalBytes += size;
+        sizeHistogram[sizeBucket(size)]++;
+        if (lastModified != null) {
+            long millis = lastModified.toEpochMilli();
+            if (millis > lastModifiedWatermark) {
+                lastModifiedWatermark = millis;
+            }
+            monthHistogram.merge(MONTH_FORMAT.format(lastModified), 1L, Long::sum);
+        }
+    }
+
+    public void merge(PrefixUsageStats other) {
+        objectCount += other.objectCount;
+        totalBytes += other.totalBytes;
+        lastModifiedWatermark = Math.max(lastModifiedWatermark, other.lastModifiedWatermark);
+        listedAt = listedAt == 0 ? other.listedAt : Math.min(listedAt, other.listedAt);
+        for (int i = 0; i < sizeHistogram.length; i++) {
+            sizeHistogram[i] += other.sizeHistogram[i];
+        }
+        other.monthHistogram.forEach((month, count) -> monthHistogram.merge(month, count, Long::sum));
+    }
+
+    static int sizeBucket(long size) {
+        for (int i = 0; i < SIZE_BOUNDS.length; i++) {
+            if (size < SIZE_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return SIZE_BOUNDS.length;
+    }
+
+    /**
+     * Returns the size histogram keyed by human readable bucket labels.
+     */
+    public Map<String, Long> sizeHistogramByLabel() {
+        Map<String, Long> labelled = new LinkedHashMap<>();
+        for (int i = 0; i < sizeHistogram.length; i++) {
+            labelled.put(SIZE_LABELS[i], sizeHistogram[i]);
+        }
+        return labelled;
+    }
+
+    public long getObjectCount() {
+        return objectCount;
+    }
+
+    public void setObjectCount(long objectCount) {
+        this.objectCount = objectCount;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    public long getLastModifiedWatermark() {
+        return lastModifiedWatermark;
+    }
+
+    public void setLastModifiedWatermark(long lastModifiedWatermark) {
+        this.lastModifiedWatermark = lastModifiedWatermark;
+    }
+
+    public long getListedAt() {
+        return listedAt;
+    }
+
+    public void setListedAt(long listedAt) {
+        this.listedAt = listedAt;
+    }
+
+    public long[] getSizeHistogram() {
+        return sizeHistogram;
+    }
+
+    public void setSizeHistogram(long[] sizeHistogram) {
+        this.sizeHistogram = sizeHistogram;
+    }
+
+    public TreeMap<String, Long> getMonthHistogram() {
+        return monthHistogram;
+    }
+
+    public void setMonthHistogram(TreeMap<String, Long> monthHistogram) {
+        this.monthHistogram = monthHistogram;
+    }
+}
@@ -0,0 +1,544 @@
+package com.lskun.mcp.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams a prefix into a local zip/tar archive and expands a local archive into a bucket.
+ * <p>
+ * Downloads keep a window of up to {@code r2.archive.concurrency} objects in flight: objects up to
+ * {@code r2.archive.prefetch-max-object-bytes} are prefetched in parallel into memory, larger ones
+ * are streamed straight from R2 into the archive when their turn comes. Uploads read the archive
+ * sequentially and PUT entries in parallel; entries larger than {@code r2.archive.part-size-bytes}
+ * are sent as multipart uploads. In both directions memory stays bounded by
+ * {@code concurrency * max(prefetch size, part size)} and no intermediate files are written.
+ */
+@Service
+public class R2ArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(R2ArchiveService.class);
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final R2ClientRegistry clientRegistry;
+    private final ContentTypeRegistry contentTypes;
+    private final int concurrency;
+    private final int prefetchMaxObjectBytes;
+    private final int partSize;
+    private final ExecutorService transferExecutor;
+
+    public R2ArchiveService(
+            R2ClientRegistry clientRegistry,
+            ContentTypeRegistry contentTypes,
+            @Value("${r2.archive.concurrency:8}") int concurrency,
+            @Value("${r2.archive.prefetch-max-object-bytes:8388608}") int prefetchMaxObjectBytes,
+            @Value("${r2.archive.part-size-bytes:8388608}") int partSize) {
+        this.clientRegistry = clientRegistry;
+        this.contentTypes = contentTypes;
+        this.concurrency = Math.max(1, concurrency);
+        this.prefetchMaxObjectBytes = prefetchMaxObjectBytes;
+        this.partSize = Math.max(partSize, MultipartUploader.MIN_PART_SIZE);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("r2-archive-");
+        threadFactory.setDaemon(true);
+        this.transferExecutor = Executors.newFixedThreadPool(this.concurrency, threadFactory);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        transferExecutor.shutdownNow();
+    }
+
+    enum ArchiveFormat {
+        ZIP, TAR, TAR_GZ;
+
+        static ArchiveFormat parse(String format, String archivePath) {
+            String value = format;
+            if (value == null || value.trim().isEmpty()) {
+                value = archivePath.toLowerCase(Locale.ROOT);
+                if (value.endsWith(".tar.gz") || value.endsWith(".tgz")) {
+                    return TAR_GZ;
+                }
+                if (value.endsWith(".tar")) {
+                    return TAR;
+                }
+                return ZIP;
+            }
+            return switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "zip" -> ZIP;
+                case "tar" -> TAR;
+                case "tar.gz", "tgz" -> TAR_GZ;
+                default -> throw new IllegalArgumentException("Invalid archive format: " + format + ". Must be 'zip', 'tar', or 'tar.gz'.");
+            };
+        }
+
+        String displayName() {
+            return this == TAR_GZ ? "tar.gz" : name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public record ArchiveResult(String bucket, String prefix, String archivePath, String format,
+                                int entries, long totalBytes, long elapsedMillis) {
+    }
+
+    public record ArchiveUploadResult(String bucket, String keyPrefix, String archivePath, String format,
+                                      int objects, int multipartObjects, long totalBytes, long elapsedMillis) {
+    }
+
+    @Tool(description = """
+    Download every object under a prefix into a single local zip or tar archive.
+    Objects are fetched concurrently and streamed straight into the archive; no per-object files are written.
+    Parameters:
+    - bucketName (string) - name of the bucket
+    - prefix (string) - prefix to package (e.g. "reports/2024/"); entry names are relative to the last '/' of the prefix
+    - archivePath (string) - local path of the archive to create (overwritten if it exists)
+    - format (string, optional) - "zip", "tar" or "tar.gz"; inferred from archivePath extension, default "zip"
+    """)
+    public ArchiveResult downloadPrefixAsArchive(String bucketName, String prefix, String archivePath,
+            @ToolParam(required = false) String format,
+            @ToolParam(required = false, description = R2ClientRegistry.PROFILE_PARAM_DESCRIPTION) String profile) {
+        if (bucketName == null || bucketName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Bucket name cannot be null or empty");
+        }
+        if (archivePath == null || archivePath.trim().isEmpty()) {
+            throw new IllegalArgumentException("Archive path cannot be null or empty");
+        }
+        String root = prefix == null ? "" : prefix;
+        ArchiveFormat archiveFormat = ArchiveFormat.parse(format, archivePath);
+        logger.info("Archiving bucket: {} prefix: {} into {} ({})", bucketName, root, archivePath, archiveFormat.displayName());
+
+        long start = System.currentTimeMillis();
+        S3Client s3Client = clientRegistry.client(profile);
+        Path target = Paths.get(archivePath).toAbsolutePath();
+        int baseLength = root.lastIndexOf('/') + 1;
+        Deque<PendingObject> window = new ArrayDeque<>();
+        int entries = 0;
+        long totalBytes = 0;
+        try {
+            Files.createDirectories(target.getParent());
+            Iterator<S3Object> objects = s3Client.listObjectsV2Paginator(ListObjectsV2Request.builder()
+                    .bucket(bucketName)
+                    .prefix(root)
+                    .build()).contents().iterator();
+
+            try (ArchiveSink sink = openSink(archiveFormat, target)) {
+                byte[] copyBuffer = new byte[COPY_BUFFER_SIZE];
+                while (true) {
+                    fillWindow(window, objects, s3Client, bucketName);
+                    PendingObject next = window.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    String name = next.object.key().substring(baseLength);
+                    long modified = next.object.lastModified().toEpochMilli();
+                    if (next.body != null) {
+                        byte[] data = await(next.body);
+                        sink.putEntry(name, data.length, modified);
+                        sink.write(data, 0, data.length);
+                        totalBytes += data.length;
+                    } else {
+                        // 大对象不预取，轮到时直接从R2流式写入归档
+                        try (ResponseInputStream<GetObjectResponse> in = s3Client.getObject(getRequest(bucketName, next.object.key()))) {
+                            sink.putEntry(name, next.object.size(), modified);
+                            int read;
+                            while ((read = in.read(copyBuffer)) != -1) {
+                                sink.write(copyBuffer, 0, read);
+                                totalBytes += read;
+                            }
+                        }
+                    }
+                    entries++;
+                }
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            window.forEach(pending -> {
+                if (pending.body != null) {
+                    pending.body.cancel(true);
+                }
+            });
+            deleteQuietly(target);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            logger.error("Failed to archive bucket '{}' prefix '{}': {}", bucketName, root, e.getMessage(), e);
+            throw new RuntimeException("Failed to archive bucket '" + bucketName + "' with prefix '" + root + "': " + e.getMessage(), e);
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        logger.info("Archived {} objects ({} bytes) from bucket: {} into {} in {} ms", entries, totalBytes, bucketName, target, elapsed);
+        return new ArchiveResult(bucketName, root, target.toString(), archiveFormat.displayName(), entries, totalBytes, elapsed);
+    }
+
+    @Tool(description = """
+    Upload every file entry of a local zip or tar archive into a bucket, in parallel.
+    Large entries are sent as multipart uploads; the archive is streamed and never extracted to disk.
+    Parameters:
+    - bucketName (string) - name of the bucket
+    - archivePath (string) - local path of the archive to expand
+    - keyPrefix (string, optional) - prefix prepended to every entry name to form the object key (e.g. "imports/")
+    - format (string, optional) - "zip", "tar" or "tar.gz"; inferred from archivePath extension, default "zip"
+    """)
+    public ArchiveUploadResult uploadArchive(String bucketName, String archivePath,
+            @ToolParam(required = false) String keyPrefix, @ToolParam(required = false) String format,
+            @ToolParam(required = false, description = R2ClientRegistry.PROFILE_PARAM_DESCRIPTION) String profile) {
+        if (bucketName == null || bucketName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Bucket name cannot be null or empty");
+        }
+        if (archivePath == null || archivePath.trim().isEmpty()) {
+            throw new IllegalArgumentException("Archive path cannot be null or empty");
+        }
+        Path source = Paths.get(archivePath);
+        if (!Files.isRegularFile(source)) {
+            throw new IllegalArgumentException("File does not exist: " + archivePath);
+        }
+        String prefix = keyPrefix == null ? "" : keyPrefix;
+        ArchiveFormat archiveFormat = ArchiveFormat.parse(format, archivePath);
+        logger.info("Expanding archive {} ({}) into bucket: {} with key prefix: {}", archivePath, archiveFormat.displayName(), bucketName, prefix);
+
+        long start = System.currentTimeMillis();
+        S3Client s3Client = clientRegistry.client(profile);
+        Semaphore inFlight = new Semaphore(concurrency);
+        List<Future<?>> uploads = new ArrayList<>();
+        int objects = 0;
+        int multipartObjects = 0;
+        long totalBytes = 0;
+        try (ArchiveSource archive = openSource(archiveFormat, source)) {
+            String entryName;
+            while ((entryName = archive.nextEntry()) != null) {
+                String key = prefix + normalizeEntryName(entryName);
+                long entrySize = archive.entrySize();
+                InputStream entryStream = archive.entryStream();
+
+                // 先申请许可再分配缓冲区，保证同时存在的缓冲区数量有上限
+                inFlight.acquire();
+                byte[] buffer;
+                try {
+                    buffer = readHead(entryStream, entrySize, partSize);
+                } catch (IOException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                int length = buffer.length;
+                // 条目首段已在缓冲区中，扩展名缺失或有歧义时直接据此识别类型
+                String contentType = contentTypes.detect(key, buffer, length);
+
+                if (length == partSize && (entrySize < 0 || entrySize > partSize)) {
+                    // 大条目：首段已读入缓冲区，剩余部分按分段并行上传
+                    CountingInputStream rest = new CountingInputStream(entryStream);
+                    MultipartUploader.upload(s3Client, transferExecutor, inFlight, bucketName, key, contentType,
+                            buffer, length, rest, partSize);
+                    multipartObjects++;
+                    totalBytes += length + rest.count();
+                } else {
+                    uploads.add(submitPut(s3Client, inFlight, bucketName, key, contentType, buffer, length));
+                    totalBytes += length;
+                }
+                objects++;
+            }
+            for (Future<?> upload : uploads) {
+                await(upload);
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            uploads.forEach(upload -> upload.cancel(true));
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            logger.error("Failed to expand archive '{}' into bucket '{}': {}", archivePath, bucketName, e.getMessage(), e);
+            throw new RuntimeException("Failed to expand archive '" + archivePath + "' into bucket '" + bucketName + "': " + e.getMessage(), e);
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        logger.info("Uploaded {} objects ({} multipart, {} bytes) from archive {} in {} ms", objects, multipartObjects, totalBytes, archivePath, elapsed);
+        return new ArchiveUploadResult(bucketName, prefix, source.toAbsolutePath().toString(), archiveFormat.displayName(),
+                objects, multipartObjects, totalBytes, elapsed);
+    }
+
+    private record PendingObject(S3Object object, Future<byte[]> body) {
+    }
+
+    private void fillWindow(Deque<PendingObject> window, Iterator<S3Object> objects, S3Client s3Client, String bucketName) {
+        while (window.size() < concurrency && objects.hasNext()) {
+            S3Object object = objects.next();
+            if (object.key().endsWith("/") && object.size() == 0) {
+                continue; // 目录占位对象
+            }
+            Future<byte[]> body = object.size() <= prefetchMaxObjectBytes
+                    ? transferExecutor.submit(() -> s3Client.getObjectAsBytes(getRequest(bucketName, object.key())).asByteArrayUnsafe())
+                    : null;
+            window.add(new PendingObject(object, body));
+        }
+    }
+
+    private Future<?> submitPut(S3Client s3Client, Semaphore inFlight, String bucketName, String key,
+                                String contentType, byte[] buffer, int length) {
+        try {
+            return transferExecutor.submit(() -> {
+                try {
+                    s3Client.putObject(PutObjectRequest.builder()
+                                    .bucket(bucketName)
+                                    .key(key)
+                                    .contentType(contentType)
+                                    .build(),
+                            RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, length), length));
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private static GetObjectRequest getRequest(String bucketName, String key) {
+        return GetObjectRequest.builder().bucket(bucketName).key(key).build();
+    }
+
+    /**
+     * 读取条目开头最多limit字节。大小已知时按实际大小分配；大小未知（如ZIP数据描述符条目）时从小缓冲区
+     * 按倍数增长，避免每个小条目都占用一整个分段大小的内存。
+     */
+    static byte[] readHead(InputStream in, long size, int limit) throws IOException {
+        if (size >= 0) {
+            byte[] buffer = new byte[(int) Math.min(size, limit)];
+            int length = in.readNBytes(buffer, 0, buffer.length);
+            return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+        }
+        byte[] buffer = new byte[Math.min(COPY_BUFFER_SIZE, limit)];
+        int length = 0;
+        while (true) {
+            int read = in.readNBytes(buffer, length, buffer.length - length);
+            length += read;
+            if (length < buffer.length || buffer.length == limit) {
+                break;
+            }
+            buffer = Arrays.copyOf(buffer, (int) Math.min((long) buffer.length * 2, limit));
+        }
+        return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * 将条目名称转换为相对键：统一分隔符，去掉空段与"."段；含".."段的条目会逃出keyPrefix，直接拒绝
+     */
+    static String normalizeEntryName(String name) {
+        StringBuilder normalized = new StringBuilder(name.length());
+        for (String segment : name.replace('\\', '/').split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                throw new IllegalArgumentException("Archive entry escapes the key prefix: " + name);
+            }
+            if (normalized.length() > 0) {
+                normalized.append('/');
+            }
+            normalized.append(segment);
+        }
+        if (normalized.length() == 0) {
+            throw new IllegalArgumentException("Archive entry has an empty name: " + name);
+        }
+        return normalized.toString();
+    }
+
+    private static <T> T await(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof S3Exception s3Exception) {
+                throw s3Exception;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete partial archive {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Sequential writer for the entries of an archive being created.
+     */
+    private interface ArchiveSink extends Closeable {
+        void putEntry(String name, long size, long modifiedMillis) throws IOException;
+
+        void write(byte[] buffer, int offset, int length) throws IOException;
+    }
+
+    /**
+     * Sequential reader over the file entries of an archive being expanded.
+     */
+    private interface ArchiveSource extends Closeable {
+        /** Returns the next file entry name, or {@code null} at the end of the archive. */
+        String nextEntry() throws IOException;
+
+        /** Size of the current entry, or -1 if the archive does not record it up front. */
+        long entrySize();
+
+        /** Stream over the current entry's data; ends at the end of the entry. */
+        InputStream entryStream();
+    }
+
+    private static ArchiveSink openSink(ArchiveFormat format, Path target) throws IOException {
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(target), COPY_BUFFER_SIZE);
+        if (format == ArchiveFormat.ZIP) {
+            ZipOutputStream zip = new ZipOutputStream(out);
+            return new ArchiveSink() {
+                @Override
+                public void putEntry(String name, long size, long modifiedMillis) throws IOException {
+                    ZipEntry entry = new ZipEntry(name);
+                    entry.setLastModifiedTime(FileTime.fromMillis(modifiedMillis));
+                    zip.putNextEntry(entry);
+                }
+
+                @Override
+                public void write(byte[] buffer, int offset, int length) throws IOException {
+                    zip.write(buffer, offset, length);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    zip.close();
+                }
+            };
+        }
+        TarArchive.Writer tar = new TarArchive.Writer(format == ArchiveFormat.TAR_GZ
+                ? new GZIPOutputStream(out, COPY_BUFFER_SIZE) : out);
+        return new ArchiveSink() {
+            @Override
+            public void putEntry(String name, long size, long modifiedMillis) throws IOException {
+                tar.putEntry(name, size, modifiedMillis);
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                tar.write(buffer, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                tar.close();
+            }
+        };
+    }
+
+    private static ArchiveSource openSource(ArchiveFormat format, Path source) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(source), COPY_BUFFER_SIZE);
+        if (format == ArchiveFormat.ZIP) {
+            ZipInputStream zip = new ZipInputStream(in);
+            return new ArchiveSource() {
+                private ZipEntry current;
+
+                @Override
+                public String nextEntry() throws IOException {
+                    do {
+                        current = zip.getNextEntry();
+                    } while (current != null && current.isDirectory());
+                    return current == null ? null : current.getName();
+                }
+
+                @Override
+                public long entrySize() {
+                    return current.getSize();
+                }
+
+                @Override
+                public InputStream entryStream() {
+                    return zip;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    zip.close();
+                }
+            };
+        }
+        TarArchive.Reader tar = new TarArchive.Reader(format == ArchiveFormat.TAR_GZ
+                ? new GZIPInputStream(in, COPY_BUFFER_SIZE) : in);
+        InputStream entryStream = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                return tar.read(buffer, offset, length);
+            }
+        };
+        return new ArchiveSource() {
+            private TarArchive.Entry current;
+
+            @Override
+            public String nextEntry() throws IOException {
+                current = tar.next();
+                return current == null ? null : current.name();
+            }
+
+            @Override
+            public long entrySize() {
+                return current.size();
+            }
+
+            @Override
+            public InputStream entryStream() {
+                return entryStream;
+            }
+
+            @Override
+            public void close() throws IOException {
+                tar.close();
+            }
+        };
+    }
+}
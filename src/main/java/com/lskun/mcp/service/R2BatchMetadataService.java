@@ -0,0 +1,191 @@
+package com.lskun.mcp.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Fetches metadata for many keys in one tool call by running HEAD requests concurrently.
+ * <p>
+ * Per-call concurrency is bounded by a semaphore (default {@code r2.metadata.concurrency}, capped at
+ * {@code r2.metadata.max-concurrency}, which is also the size of the shared pool). Failures are
+ * reported inline per key so one missing object does not fail the whole batch.
+ */
+@Service
+public class R2BatchMetadataService {
+
+    private static final Logger logger = LoggerFactory.getLogger(R2BatchMetadataService.class);
+
+    private final R2ClientRegistry clientRegistry;
+    private final R2ReadCoalescer readCoalescer;
+    private final int defaultConcurrency;
+    private final int maxConcurrency;
+    private final ExecutorService headExecutor;
+
+    public R2BatchMetadataService(
+            R2ClientRegistry clientRegistry,
+            R2ReadCoalescer readCoalescer,
+            @Value("${r2.metadata.concurrency:16}") int defaultConcurrency,
+            @Value("${r2.metadata.max-concurrency:64}") int maxConcurrency) {
+        this.clientRegistry = clientRegistry;
+        this.readCoalescer = readCoalescer;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.defaultConcurrency = Math.min(Math.max(1, defaultConcurrency), this.maxConcurrency);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("r2-head-");
+        threadFactory.setDaemon(true);
+        this.headExecutor = Executors.newFixedThreadPool(this.maxConcurrency, threadFactory);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        headExecutor.shutdownNow();
+    }
+
+    /**
+     * Metadata of one key, or the error that prevented fetching it; absent fields are omitted from JSON.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record KeyMetadata(
+            String key,
+            String contentType,
+            Long contentLength,
+            String lastModified,
+            String eTag,
+            Map<String, String> metadata,
+            String error) {
+
+        static KeyMetadata of(String key, HeadObjectResponse response) {
+            return new KeyMetadata(
+                    key,
+                    response.contentType(),
+                    response.contentLength(),
+                    response.lastModified() == null ? null : response.lastModified().toString(),
+                    response.eTag(),
+                    response.metadata().isEmpty() ? null : response.metadata(),
+                    null);
+        }
+
+        static KeyMetadata failed(String key, String error) {
+            return new KeyMetadata(key, null, null, null, null, null, error);
+        }
+    }
+
+    @Tool(description = """
+    Get metadata for many objects in one call. HEAD requests run concurrently and results are
+    returned in input order; a key that cannot be read gets an inline 'error' instead of failing the batch.
+    Parameters:
+    - bucketName (string) - name of the bucket
+    - keys (array of strings, optional) - object keys to look up
+    - prefix (string, optional) - look up every object under this prefix instead of (or in addition to) keys
+    - maxKeys (integer, optional) - maximum number of keys taken from the prefix listing (default 1000)
+    - concurrency (integer, optional) - number of concurrent HEAD requests (default 16, capped by server configuration)
+    """)
+    public List<KeyMetadata> getObjectsMetadata(String bucketName,
+            @ToolParam(required = false) List<String> keys, @ToolParam(required = false) String prefix,
+            @ToolParam(required = false) Integer maxKeys, @ToolParam(required = false) Integer concurrency,
+            @ToolParam(required = false, description = R2ClientRegistry.PROFILE_PARAM_DESCRIPTION) String profile) {
+        if (bucketName == null || bucketName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Bucket name cannot be null or empty");
+        }
+        List<String> targets = new ArrayList<>();
+        if (keys != null) {
+            targets.addAll(keys);
+        }
+        if (prefix != null && !prefix.isEmpty()) {
+            targets.addAll(listKeys(bucketName, prefix, maxKeys == null || maxKeys <= 0 ? 1000 : maxKeys, profile));
+        }
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("Either keys or a prefix with matching objects must be provided");
+        }
+
+        int permits = concurrency == null || concurrency <= 0 ? defaultConcurrency : Math.min(concurrency, maxConcurrency);
+        logger.info("Fetching metadata for {} keys in bucket: {} with concurrency: {}", targets.size(), bucketName, permits);
+        long start = System.currentTimeMillis();
+
+        Semaphore inFlight = new Semaphore(permits);
+        List<Future<KeyMetadata>> futures = new ArrayList<>(targets.size());
+        try {
+            for (String key : targets) {
+                inFlight.acquire();
+                try {
+                    futures.add(headExecutor.submit(() -> {
+                        try {
+                            return head(bucketName, key, profile);
+                        } finally {
+                            inFlight.release();
+                        }
+                    }));
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+            }
+            List<KeyMetadata> results = new ArrayList<>(futures.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(KeyMetadata.failed(targets.get(i), String.valueOf(e.getCause().getMessage())));
+                }
+            }
+            long failed = results.stream().filter(result -> result.error() != null).count();
+            logger.info("Metadata for {} keys in bucket: {} fetched in {} ms ({} failed)",
+                    results.size(), bucketName, System.currentTimeMillis() - start, failed);
+            return results;
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while fetching metadata in bucket '" + bucketName + "'", e);
+        }
+    }
+
+    private KeyMetadata head(String bucketName, String key, String profile) {
+        try {
+            return KeyMetadata.of(key, readCoalescer.headObject(profile, bucketName, key));
+        } catch (S3Exception e) {
+            return KeyMetadata.failed(key, e.statusCode() == 404 ? "Not found" : e.statusCode() + ": " + e.getMessage());
+        } catch (SdkException e) {
+            return KeyMetadata.failed(key, e.getMessage());
+        }
+    }
+
+    private List<String> listKeys(String bucketName, String prefix, int maxKeys, String profile) {
+        try {
+            List<String> keys = new ArrayList<>();
+            ListObjectsV2Request request = ListObjectsV2Request.builder()
+                    .bucket(bucketName)
+                    .prefix(prefix)
+                    .build();
+            for (S3Object s3Object : clientRegistry.client(profile).listObjectsV2Paginator(request).contents()) {
+                if (keys.size() >= maxKeys) {
+                    break;
+                }
+                keys.add(s3Object.key());
+            }
+            return keys;
+        } catch (S3Exception e) {
+            logger.error("Failed to list objects in bucket '{}' with prefix '{}': {}", bucketName, prefix, e.getMessage(), e);
+            throw new RuntimeException("Failed to list objects in bucket '" + bucketName + "' with prefix '" + prefix + "': " + e.getMessage(), e);
+        }
+    }
+}
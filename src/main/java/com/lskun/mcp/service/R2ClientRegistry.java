@@ -0,0 +1,159 @@
+package com.lskun.mcp.service;
+
+import com.lskun.mcp.config.R2ProfileProperties;
+import com.lskun.mcp.config.R2Properties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.metrics.MetricPublisher;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of named R2 profiles (accounts/endpoints), each backed by its own pooled {@link S3Client}.
+ * <p>
+ * Clients are created lazily on first use of a profile, so a process serving many accounts only
+ * pays for the ones that are actually called, and stdio launches are not delayed by SDK setup.
+ * All profiles share the process-wide tool executors instead of requiring one JVM per account, and
+ * {@code r2.max-total-connections} is split evenly across the profiles so that their pools together
+ * never exceed it.
+ * {@link ExecutionInterceptor} beans (bandwidth shaping, tracing) and {@link MetricPublisher} beans
+ * (connection pool and HTTP timings) are attached to every client.
+ */
+@Component
+public class R2ClientRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(R2ClientRegistry.class);
+
+    public static final String DEFAULT_PROFILE = "default";
+
+    /** Shared description of the optional {@code profile} parameter accepted by every R2 tool. */
+    public static final String PROFILE_PARAM_DESCRIPTION =
+            "name of the R2 profile (account) to use; omit for the default profile";
+
+    private final Map<String, R2ProfileProperties> profiles = new LinkedHashMap<>();
+    private final Map<String, S3Client> clients = new ConcurrentHashMap<>();
+    private final List<ExecutionInterceptor> interceptors;
+    private final List<MetricPublisher> metricPublishers;
+    private final int connectionShare;
+
+    public R2ClientRegistry(R2Properties properties) {
+        this(properties, List.of(), List.of());
+    }
+
+    @Autowired
+    public R2ClientRegistry(R2Properties properties, List<ExecutionInterceptor> interceptors,
+                            List<MetricPublisher> metricPublishers) {
+        this.interceptors = List.copyOf(interceptors);
+        this.metricPublishers = List.copyOf(metricPublishers);
+        if (properties.getEndpoint() != null && !properties.getEndpoint().trim().isEmpty()) {
+            profiles.put(DEFAULT_PROFILE, properties);
+        }
+        properties.getProfiles().forEach((name, profile) -> {
+            if (DEFAULT_PROFILE.equals(name) && profiles.containsKey(DEFAULT_PROFILE)) {
+                throw new IllegalStateException("Profile 'default' is configured both by r2.endpoint and r2.profiles.default");
+            }
+            profiles.put(name, profile);
+        });
+        // 全局连接数按profile平均分配，每个profile的连接池不超过其份额
+        int maxTotalConnections = properties.getMaxTotalConnections();
+        if (maxTotalConnections < Math.max(1, profiles.size())) {
+            throw new IllegalStateException("r2.max-total-connections (" + maxTotalConnections
+                    + ") must be at least the number of profiles (" + profiles.size() + ")");
+        }
+        this.connectionShare = profiles.isEmpty() ? maxTotalConnections : maxTotalConnections / profiles.size();
+        logger.info("Configured R2 profiles: {} with up to {} connections each", profiles.keySet(), connectionShare);
+    }
+
+    /**
+     * Returns the client of the given profile, creating it on first use.
+     *
+     * @param profile profile name; {@code null} or blank selects the default profile
+     * @throws IllegalArgumentException if the profile is not configured
+     */
+    public S3Client client(String profile) {
+        String name = resolve(profile);
+        return clients.computeIfAbsent(name, key -> createS3Client(key, profiles.get(key)));
+    }
+
+    /**
+     * Normalizes a profile name and verifies it is configured.
+     */
+    public String resolve(String profile) {
+        String name = profile == null || profile.trim().isEmpty() ? DEFAULT_PROFILE : profile.trim();
+        if (!profiles.containsKey(name)) {
+            throw new IllegalArgumentException("Unknown R2 profile: '" + name + "'. Configured profiles: " + profiles.keySet());
+        }
+        return name;
+    }
+
+    /**
+     * A configured profile as reported to tool callers; credentials are never exposed.
+     */
+    public record ProfileInfo(String name, String endpoint, int maxConnections, boolean connected) {
+    }
+
+    @Tool(description = """
+    List the configured R2 profiles (accounts/endpoints). Pass a profile name as the 'profile'
+    parameter of the other R2 tools to operate on that account.
+    """)
+    public List<ProfileInfo> listProfiles() {
+        List<ProfileInfo> result = new ArrayList<>();
+        profiles.forEach((name, profile) -> result.add(
+                new ProfileInfo(name, profile.getEndpoint(), maxConnections(profile), clients.containsKey(name))));
+        return result;
+    }
+
+    private int maxConnections(R2ProfileProperties profile) {
+        return Math.min(profile.getMaxConnections(), connectionShare);
+    }
+
+    private S3Client createS3Client(String name, R2ProfileProperties profile) {
+        logger.info("Initializing R2 client for profile: {} with endpoint: {}", name, profile.getEndpoint());
+
+        // 每个profile独立的HTTP连接池（大小受全局份额限制），由S3Client负责关闭
+        ApacheHttpClient.Builder httpClientBuilder = ApacheHttpClient.builder()
+                .maxConnections(maxConnections(profile))
+                .connectionTimeout(profile.getConnectionTimeout())
+                .socketTimeout(profile.getSocketTimeout());
+
+        S3Client client = S3Client.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create(profile.getAccessKeyId(), profile.getSecretAccessKey())))
+                .endpointOverride(URI.create(profile.getEndpoint()))
+                .region(Region.of("auto"))
+                .serviceConfiguration(S3Configuration.builder()
+                        .checksumValidationEnabled(false)
+                        .pathStyleAccessEnabled(true)
+                        .build())
+                .httpClientBuilder(httpClientBuilder)
+                .overrideConfiguration(configuration -> configuration
+                        .executionInterceptors(interceptors)
+                        .metricPublishers(metricPublishers))
+                .build();
+
+        logger.info("R2 client for profile: {} initialized successfully", name);
+        return client;
+    }
+
+    @PreDestroy
+    void close() {
+        clients.values().forEach(S3Client::close);
+        clients.clear();
+    }
+}
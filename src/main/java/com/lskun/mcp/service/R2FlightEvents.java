@@ -0,0 +1,235 @@
+package com.lskun.mcp.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * JDK Flight Recorder events covering each phase of an R2 tool call.
+ * <p>
+ * A slow call can be broken down in JDK Mission Control (or {@code jfr print}) by thread and time:
+ * {@link ToolCallEvent} spans the MCP tool invocation, {@link RequestEvent} each SDK API call,
+ * {@link HttpAttemptEvent} the connection pool and HTTP timings of each attempt, {@link BodyTransferEvent}
+ * the streaming of an object body, and {@link LocalWriteEvent} writes to local disk. Events cost
+ * next to nothing unless a recording is running.
+ */
+public final class R2FlightEvents {
+
+    static final String CATEGORY = "R2 MCP Server";
+
+    private R2FlightEvents() {
+    }
+
+    @Name("com.lskun.mcp.ToolCall")
+    @Label("R2 Tool Call")
+    @Category(CATEGORY)
+    @Description("MCP tool invocation, from the JSON arguments to the serialized result")
+    @StackTrace(false)
+    static final class ToolCallEvent extends Event {
+
+        @Label("Tool")
+        String tool;
+
+        @Label("Arguments Length")
+        int argumentsLength;
+
+        @Label("Result Length")
+        int resultLength;
+
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name("com.lskun.mcp.Request")
+    @Label("R2 Request")
+    @Category({CATEGORY, "SDK"})
+    @Description("One R2 API call as seen by the SDK, until the response is returned; streamed object bodies are recorded separately")
+    @StackTrace(false)
+    static final class RequestEvent extends Event {
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Bucket")
+        String bucket;
+
+        @Label("Key")
+        String key;
+
+        @Label("Status Code")
+        int statusCode;
+
+        @Label("Attempts")
+        int attempts;
+
+        @Label("Preparation")
+        @Description("Marshalling, signing and interceptors before the first attempt is handed to the HTTP client")
+        @Timespan
+        long preparation;
+
+        @Label("Time To First Byte")
+        @Description("Last attempt: connection pool acquire, TLS, request send and R2 processing until response headers")
+        @Timespan
+        long timeToFirstByte;
+
+        @Label("Response Handling")
+        @Description("Unmarshalling and interceptors after the response headers arrived")
+        @Timespan
+        long responseHandling;
+
+        @Label("Success")
+        boolean success;
+
+        @Label("Error")
+        String error;
+    }
+
+    @Name("com.lskun.mcp.HttpAttempt")
+    @Label("R2 HTTP Attempt")
+    @Category({CATEGORY, "HTTP"})
+    @Description("Connection pool and HTTP timings reported by the SDK metrics for one attempt of an API call")
+    @StackTrace(false)
+    static final class HttpAttemptEvent extends Event {
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Status Code")
+        int statusCode;
+
+        @Label("Pool Acquire")
+        @Timespan
+        long poolAcquire;
+
+        @Label("Signing")
+        @Timespan
+        long signing;
+
+        @Label("Service Call")
+        @Description("Time from sending the request until the response headers were received")
+        @Timespan
+        long serviceCall;
+
+        @Label("Backoff Delay")
+        @Timespan
+        long backoffDelay;
+
+        @Label("Leased Connections")
+        int leasedConnections;
+
+        @Label("Pending Acquires")
+        int pendingAcquires;
+
+        @Label("Max Connections")
+        int maxConnections;
+
+        @Label("Error Type")
+        String errorType;
+    }
+
+    @Name("com.lskun.mcp.BodyTransfer")
+    @Label("R2 Object Body")
+    @Category({CATEGORY, "HTTP"})
+    @Description("Streaming of an object body, from the first read until it was fully read or closed")
+    @StackTrace(false)
+    static final class BodyTransferEvent extends Event {
+
+        @Label("Direction")
+        String direction;
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Bucket")
+        String bucket;
+
+        @Label("Key")
+        String key;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Complete")
+        @Description("Whether the body was read to its end rather than closed early")
+        boolean complete;
+    }
+
+    @Name("com.lskun.mcp.LocalWrite")
+    @Label("R2 Local Write")
+    @Category({CATEGORY, "Disk"})
+    @Description("Object data written to a local file; the write and sync times exclude waiting for the network")
+    @StackTrace(false)
+    static final class LocalWriteEvent extends Event {
+
+        @Label("Purpose")
+        String purpose;
+
+        @Label("Path")
+        String path;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Write Time")
+        @Timespan
+        long writeTime;
+
+        @Label("Sync Time")
+        @Timespan
+        long syncTime;
+    }
+
+    /**
+     * Output stream that times the writes to the wrapped file stream and records a {@link LocalWriteEvent} on close.
+     */
+    static final class LocalWriteStream extends FilterOutputStream {
+
+        private final LocalWriteEvent event = new LocalWriteEvent();
+
+        LocalWriteStream(OutputStream out, String purpose, Path path) {
+            super(out);
+            event.begin();
+            event.purpose = purpose;
+            event.path = path.toString();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long start = System.nanoTime();
+            out.write(b);
+            event.writeTime += System.nanoTime() - start;
+            event.bytes++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            long start = System.nanoTime();
+            out.write(buffer, offset, length);
+            event.writeTime += System.nanoTime() - start;
+            event.bytes += length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            long start = System.nanoTime();
+            try {
+                super.close();
+            } finally {
+                event.writeTime += System.nanoTime() - start;
+                event.commit();
+            }
+        }
+    }
+}
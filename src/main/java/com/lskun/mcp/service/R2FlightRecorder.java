@@ -0,0 +1,325 @@
+package com.lskun.mcp.service;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.ContentStreamProvider;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+import software.amazon.awssdk.metrics.SdkMetric;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Emits the SDK and HTTP phases of R2 calls as {@link R2FlightEvents} and optionally records them to a file.
+ * <p>
+ * Attached to the clients of all profiles both as an {@link ExecutionInterceptor}, which times each API
+ * call and wraps object bodies, and as a {@link MetricPublisher}, which receives the connection pool and
+ * per-attempt timings of the Apache HTTP client. When {@code r2.tracing.recording-file} is set, a JFR
+ * recording of the R2 events is started at startup and written to that file on shutdown; otherwise the
+ * events are only captured by recordings started externally (e.g. {@code jcmd <pid> JFR.start}).
+ */
+@Component
+public class R2FlightRecorder implements ExecutionInterceptor, MetricPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(R2FlightRecorder.class);
+
+    private static final ExecutionAttribute<R2FlightEvents.RequestEvent> REQUEST_EVENT =
+            new ExecutionAttribute<>("R2FlightRecorder.RequestEvent");
+    private static final ExecutionAttribute<Long> EXECUTION_START = new ExecutionAttribute<>("R2FlightRecorder.ExecutionStart");
+    private static final ExecutionAttribute<Long> TRANSMISSION_START = new ExecutionAttribute<>("R2FlightRecorder.TransmissionStart");
+    private static final ExecutionAttribute<Long> RESPONSE_START = new ExecutionAttribute<>("R2FlightRecorder.ResponseStart");
+
+    private static final List<Class<? extends jdk.jfr.Event>> EVENT_TYPES = List.of(
+            R2FlightEvents.ToolCallEvent.class,
+            R2FlightEvents.RequestEvent.class,
+            R2FlightEvents.HttpAttemptEvent.class,
+            R2FlightEvents.BodyTransferEvent.class,
+            R2FlightEvents.LocalWriteEvent.class);
+
+    private final Recording recording;
+
+    public R2FlightRecorder(
+            @Value("${r2.tracing.recording-file:}") String recordingFile,
+            @Value("${r2.tracing.max-age:PT1H}") Duration maxAge) {
+        this.recording = recordingFile == null || recordingFile.trim().isEmpty()
+                ? null
+                : startRecording(Paths.get(recordingFile.trim()).toAbsolutePath(), maxAge);
+    }
+
+    private static Recording startRecording(Path destination, Duration maxAge) {
+        try {
+            Path parent = destination.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Recording recording = new Recording();
+            recording.setName("r2-mcp-server");
+            EVENT_TYPES.forEach(type -> recording.enable(type).withoutThreshold());
+            recording.setToDisk(true);
+            recording.setMaxAge(maxAge);
+            recording.setDestination(destination);
+            recording.start();
+            logger.info("Recording R2 flight events to {}", destination);
+            return recording;
+        } catch (IOException | RuntimeException e) {
+            // 录制失败不影响服务本身，事件仍可由外部启动的录制捕获
+            logger.warn("Failed to start JFR recording to {}: {}", destination, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        R2FlightEvents.RequestEvent event = new R2FlightEvents.RequestEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.begin();
+        event.operation = executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+        event.bucket = field(context.request(), "Bucket");
+        event.key = field(context.request(), "Key");
+        executionAttributes.putAttribute(REQUEST_EVENT, event);
+        executionAttributes.putAttribute(EXECUTION_START, System.nanoTime());
+    }
+
+    @Override
+    public void beforeTransmission(Context.BeforeTransmission context, ExecutionAttributes executionAttributes) {
+        R2FlightEvents.RequestEvent event = executionAttributes.getAttribute(REQUEST_EVENT);
+        if (event == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (event.attempts == 0) {
+            event.preparation = now - executionAttributes.getAttribute(EXECUTION_START);
+        }
+        event.attempts++;
+        executionAttributes.putAttribute(TRANSMISSION_START, now);
+    }
+
+    @Override
+    public void afterTransmission(Context.AfterTransmission context, ExecutionAttributes executionAttributes) {
+        R2FlightEvents.RequestEvent event = executionAttributes.getAttribute(REQUEST_EVENT);
+        if (event == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        event.timeToFirstByte = now - executionAttributes.getAttribute(TRANSMISSION_START);
+        event.statusCode = context.httpResponse().statusCode();
+        executionAttributes.putAttribute(RESPONSE_START, now);
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+        R2FlightEvents.RequestEvent event = executionAttributes.getAttribute(REQUEST_EVENT);
+        if (event == null) {
+            return;
+        }
+        Long responseStart = executionAttributes.getAttribute(RESPONSE_START);
+        if (responseStart != null) {
+            event.responseHandling = System.nanoTime() - responseStart;
+        }
+        event.success = true;
+        event.commit();
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        R2FlightEvents.RequestEvent event = executionAttributes.getAttribute(REQUEST_EVENT);
+        if (event == null) {
+            return;
+        }
+        context.httpResponse().ifPresent(response -> event.statusCode = response.statusCode());
+        Throwable exception = context.exception();
+        event.error = exception.getClass().getSimpleName() + ": " + exception.getMessage();
+        event.commit();
+    }
+
+    @Override
+    public Optional<RequestBody> modifyHttpContent(Context.ModifyHttpRequest context,
+                                                   ExecutionAttributes executionAttributes) {
+        Optional<RequestBody> body = context.requestBody();
+        if (body.isEmpty() || !new R2FlightEvents.BodyTransferEvent().isEnabled()) {
+            return body;
+        }
+        RequestBody original = body.get();
+        String operation = executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+        String bucket = field(context.request(), "Bucket");
+        String key = field(context.request(), "Key");
+        // 重试时SDK会重新调用newStream()，每次尝试单独记录一个事件
+        ContentStreamProvider timed =
+                () -> new TimedBodyStream(original.contentStreamProvider().newStream(), "upload", operation, bucket, key);
+        return Optional.of(original.optionalContentLength()
+                .map(length -> RequestBody.fromContentProvider(timed, length, original.contentType()))
+                .orElseGet(() -> RequestBody.fromContentProvider(timed, original.contentType())));
+    }
+
+    @Override
+    public Optional<InputStream> modifyHttpResponseContent(Context.ModifyHttpResponse context,
+                                                           ExecutionAttributes executionAttributes) {
+        Optional<InputStream> body = context.responseBody();
+        if (body.isEmpty() || !(context.request() instanceof GetObjectRequest)
+                || !new R2FlightEvents.BodyTransferEvent().isEnabled()) {
+            return body;
+        }
+        return Optional.of(new TimedBodyStream(body.get(), "download",
+                executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME),
+                field(context.request(), "Bucket"), field(context.request(), "Key")));
+    }
+
+    @Override
+    public void publish(MetricCollection metricCollection) {
+        if (!new R2FlightEvents.HttpAttemptEvent().isEnabled()) {
+            return;
+        }
+        String operation = first(metricCollection, CoreMetric.OPERATION_NAME);
+        for (MetricCollection attempt : metricCollection.children()) {
+            if (!"ApiCallAttempt".equals(attempt.name())) {
+                continue;
+            }
+            // 单次尝试的指标在请求结束后才发布，事件本身只记录时间，各阶段耗时保存在字段中
+            R2FlightEvents.HttpAttemptEvent event = new R2FlightEvents.HttpAttemptEvent();
+            event.operation = operation;
+            event.statusCode = orZero(first(attempt, HttpMetric.HTTP_STATUS_CODE));
+            event.poolAcquire = nanos(first(attempt, HttpMetric.CONCURRENCY_ACQUIRE_DURATION));
+            event.signing = nanos(first(attempt, CoreMetric.SIGNING_DURATION));
+            event.serviceCall = nanos(first(attempt, CoreMetric.SERVICE_CALL_DURATION));
+            event.backoffDelay = nanos(first(attempt, CoreMetric.BACKOFF_DELAY_DURATION));
+            event.leasedConnections = orZero(first(attempt, HttpMetric.LEASED_CONCURRENCY));
+            event.pendingAcquires = orZero(first(attempt, HttpMetric.PENDING_CONCURRENCY_ACQUIRES));
+            event.maxConnections = orZero(first(attempt, HttpMetric.MAX_CONCURRENCY));
+            event.errorType = first(attempt, CoreMetric.ERROR_TYPE);
+            event.commit();
+        }
+    }
+
+    @Override
+    public void close() {
+        // 同一个实例注册到多个客户端，客户端关闭时也会调用close()，只在应用关闭时停止录制
+    }
+
+    @PreDestroy
+    void stopRecording() {
+        if (recording == null) {
+            return;
+        }
+        try {
+            // 设置了destination的录制在stop时写入文件
+            recording.stop();
+            logger.info("R2 flight recording written to {}", recording.getDestination());
+        } catch (IllegalStateException e) {
+            logger.warn("Failed to stop JFR recording: {}", e.getMessage());
+        } finally {
+            recording.close();
+        }
+    }
+
+    /**
+     * Returns the first value of {@code metric} in the collection or any of its descendants.
+     */
+    static <T> T first(MetricCollection collection, SdkMetric<T> metric) {
+        List<T> values = collection.metricValues(metric);
+        if (!values.isEmpty()) {
+            return values.get(0);
+        }
+        for (MetricCollection child : collection.children()) {
+            T value = first(child, metric);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static long nanos(Duration duration) {
+        return duration == null ? 0 : duration.toNanos();
+    }
+
+    private static int orZero(Integer value) {
+        return value == null ? 0 : value;
+    }
+
+    private static String field(SdkRequest request, String name) {
+        return request.getValueForField(name, String.class).orElse(null);
+    }
+
+    /**
+     * Counts the bytes of an object body and records a {@link R2FlightEvents.BodyTransferEvent}
+     * once it has been read to the end or closed.
+     */
+    private static final class TimedBodyStream extends FilterInputStream {
+
+        private final R2FlightEvents.BodyTransferEvent event = new R2FlightEvents.BodyTransferEvent();
+        private boolean committed;
+
+        TimedBodyStream(InputStream in, String direction, String operation, String bucket, String key) {
+            super(in);
+            event.begin();
+            event.direction = direction;
+            event.operation = operation;
+            event.bucket = bucket;
+            event.key = key;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                finish(true);
+            } else {
+                event.bytes++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read == -1) {
+                finish(true);
+            } else {
+                event.bytes += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                finish(false);
+            }
+        }
+
+        private void finish(boolean complete) {
+            if (committed) {
+                return;
+            }
+            committed = true;
+            event.complete = complete;
+            event.commit();
+        }
+    }
+}
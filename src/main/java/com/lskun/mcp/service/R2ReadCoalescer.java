@@ -0,0 +1,293 @@
+package com.lskun.mcp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * Coalesces concurrent identical reads so that one R2 request serves every waiting caller.
+ * <p>
+ * HEAD, LIST and GET requests are keyed by profile, bucket, key or listing parameters, and range.
+ * A GET accepts joiners until its response headers arrive. If nobody joined, the leading caller
+ * streams the response directly; otherwise the body is read once into a {@link SharedObjectBody}:
+ * bodies up to {@code r2.coalescing.memory-threshold-bytes} stay in memory, larger ones are spooled
+ * to a temp file, and each caller then reads its own stream from that shared copy.
+ */
+@Component
+public class R2ReadCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(R2ReadCoalescer.class);
+
+    private final R2ClientRegistry clientRegistry;
+    private final boolean enabled;
+    private final int memoryThreshold;
+    private final Path spoolDir;
+
+    private final SingleFlight<ReadKey, HeadObjectResponse> headFlights = new SingleFlight<>();
+    private final SingleFlight<ListKey, ListObjectsV2Response> listFlights = new SingleFlight<>();
+    private final SingleFlight<ReadKey, SharedObjectBody> getFlights =
+            new SingleFlight<>(SharedObjectBody::setParticipants);
+
+    public R2ReadCoalescer(
+            R2ClientRegistry clientRegistry,
+            @Value("${r2.coalescing.enabled:true}") boolean enabled,
+            @Value("${r2.coalescing.memory-threshold-bytes:4194304}") int memoryThreshold,
+            @Value("${r2.coalescing.spool-dir:${java.io.tmpdir}}") String spoolDir) {
+        this.clientRegistry = clientRegistry;
+        this.enabled = enabled;
+        this.memoryThreshold = memoryThreshold;
+        this.spoolDir = Paths.get(spoolDir);
+    }
+
+    private record ReadKey(String profile, String bucket, String key, String range) {
+    }
+
+    private record ListKey(String profile, ListObjectsV2Request request) {
+    }
+
+    public HeadObjectResponse headObject(String profile, String bucketName, String key) {
+        String profileName = clientRegistry.resolve(profile);
+        HeadObjectRequest request = HeadObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build();
+        if (!enabled) {
+            return clientRegistry.client(profileName).headObject(request);
+        }
+        return headFlights.execute(new ReadKey(profileName, bucketName, key, null),
+                () -> clientRegistry.client(profileName).headObject(request));
+    }
+
+    public ListObjectsV2Response listObjectsV2(String profile, ListObjectsV2Request request) {
+        String profileName = clientRegistry.resolve(profile);
+        if (!enabled) {
+            return clientRegistry.client(profileName).listObjectsV2(request);
+        }
+        return listFlights.execute(new ListKey(profileName, request),
+                () -> clientRegistry.client(profileName).listObjectsV2(request));
+    }
+
+    /**
+     * Fetches an object body, sharing it with concurrent callers asking for the same object and range.
+     * The caller must {@link SharedObjectBody#release() release} the body when done with it.
+     *
+     * @param range optional HTTP range, e.g. {@code bytes=0-1023}
+     */
+    public SharedObjectBody getObject(String profile, String bucketName, String key, String range) {
+        String profileName = clientRegistry.resolve(profile);
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .range(range)
+                .build();
+        if (!enabled) {
+            SharedObjectBody body = new SharedObjectBody(clientRegistry.client(profileName).getObject(request));
+            body.setParticipants(1);
+            return body;
+        }
+        return getFlights.executeClosing(new ReadKey(profileName, bucketName, key, range),
+                close -> fetch(profileName, request, close));
+    }
+
+    private SharedObjectBody fetch(String profile, GetObjectRequest request, IntSupplier close) {
+        ResponseInputStream<GetObjectResponse> in = clientRegistry.client(profile).getObject(request);
+        // 响应头到达后不再接受新的参与者；无人加入时直接返回响应流，不在内存或临时文件中复制响应体
+        if (close.getAsInt() == 1) {
+            return new SharedObjectBody(in);
+        }
+        return materialize(in, request);
+    }
+
+    private SharedObjectBody materialize(ResponseInputStream<GetObjectResponse> response, GetObjectRequest request) {
+        Path spool = null;
+        try (ResponseInputStream<GetObjectResponse> in = response) {
+            GetObjectResponse metadata = in.response();
+            Long contentLength = metadata.contentLength();
+            if (contentLength != null && contentLength > memoryThreshold) {
+                spool = Files.createTempFile(spoolDir, "r2read_", ".tmp");
+                try (OutputStream out = new R2FlightEvents.LocalWriteStream(Files.newOutputStream(spool), "read-spool", spool)) {
+                    in.transferTo(out);
+                }
+                return new SharedObjectBody(metadata, null, spool);
+            }
+            if (contentLength != null) {
+                // 长度已知时直接读入最终数组，避免缓冲区扩容和toByteArray的复制
+                byte[] data = new byte[(int) Math.max(contentLength, 0)];
+                int read = in.readNBytes(data, 0, data.length);
+                if (read != data.length) {
+                    throw new IOException("Expected " + data.length + " bytes but received " + read);
+                }
+                return new SharedObjectBody(metadata, data, null);
+            }
+
+            // 长度未知时先写入内存，超过阈值再溢出到临时文件
+            ByteArrayOutputStream memory = new ByteArrayOutputStream(8192);
+            byte[] buffer = new byte[8192];
+            OutputStream spoolOut = null;
+            try {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    if (spoolOut == null && memory.size() + read > memoryThreshold) {
+                        spool = Files.createTempFile(spoolDir, "r2read_", ".tmp");
+                        spoolOut = new R2FlightEvents.LocalWriteStream(Files.newOutputStream(spool), "read-spool", spool);
+                        memory.writeTo(spoolOut);
+                        memory = null;
+                    }
+                    if (spoolOut != null) {
+                        spoolOut.write(buffer, 0, read);
+                    } else {
+                        memory.write(buffer, 0, read);
+                    }
+                }
+            } finally {
+                if (spoolOut != null) {
+                    spoolOut.close();
+                }
+            }
+            return spool != null
+                    ? new SharedObjectBody(metadata, null, spool)
+                    : new SharedObjectBody(metadata, memory.toByteArray(), null);
+        } catch (IOException e) {
+            deleteQuietly(spool);
+            throw new UncheckedIOException("Error reading object '" + request.key() + "' from bucket '"
+                    + request.bucket() + "': " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            deleteQuietly(spool);
+            throw e;
+        }
+    }
+
+    /**
+     * Number of reads that actually went to R2 and number of reads served by joining an in-flight request.
+     */
+    public record Stats(long executed, long coalesced) {
+    }
+
+    public Stats stats() {
+        return new Stats(
+                headFlights.executions() + listFlights.executions() + getFlights.executions(),
+                headFlights.coalesced() + listFlights.coalesced() + getFlights.coalesced());
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close object stream: {}", e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete spool file {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * The body of a GET: the response stream itself when only one caller asked for it, otherwise a copy
+     * shared by every caller, held in memory or in a spool file. The stream is closed and the spool file
+     * deleted once the last participant releases the body.
+     */
+    public static final class SharedObjectBody {
+
+        private final GetObjectResponse response;
+        private final ResponseInputStream<GetObjectResponse> stream;
+        private final byte[] data;
+        private final Path spool;
+        private final AtomicInteger references = new AtomicInteger();
+
+        SharedObjectBody(ResponseInputStream<GetObjectResponse> stream) {
+            this.response = stream.response();
+            this.stream = stream;
+            this.data = null;
+            this.spool = null;
+        }
+
+        SharedObjectBody(GetObjectResponse response, byte[] data, Path spool) {
+            this.response = response;
+            this.stream = null;
+            this.data = data;
+            this.spool = spool;
+        }
+
+        void setParticipants(int participants) {
+            references.set(participants);
+        }
+
+        public GetObjectResponse response() {
+            return response;
+        }
+
+        /**
+         * Opens the body for reading. A body streamed directly from R2 can only be opened once.
+         */
+        public InputStream openStream() throws IOException {
+            if (stream != null) {
+                return stream;
+            }
+            return data != null ? new ByteArrayInputStream(data) : Files.newInputStream(spool);
+        }
+
+        /**
+         * Writes the body to the destination, replacing it. A body streamed directly from R2 is written
+         * as it arrives; the spool file is moved rather than copied when this is the only participant.
+         */
+        public void writeTo(Path destination) throws IOException {
+            R2FlightEvents.LocalWriteEvent event = new R2FlightEvents.LocalWriteEvent();
+            event.begin();
+            long start = System.nanoTime();
+            event.purpose = "download";
+            event.path = destination.toString();
+            if (stream != null) {
+                event.bytes = Files.copy(stream, destination, StandardCopyOption.REPLACE_EXISTING);
+            } else if (data != null) {
+                Files.write(destination, data);
+                event.bytes = data.length;
+            } else if (references.get() == 1) {
+                // 移动后原路径不再存在，先记录大小
+                event.bytes = Files.size(spool);
+                Files.move(spool, destination, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.copy(spool, destination, StandardCopyOption.REPLACE_EXISTING);
+                event.bytes = Files.size(destination);
+            }
+            event.writeTime = System.nanoTime() - start;
+            event.commit();
+        }
+
+        public void release() {
+            if (references.decrementAndGet() == 0) {
+                if (stream != null) {
+                    closeQuietly(stream);
+                }
+                deleteQuietly(spool);
+            }
+        }
+    }
+}
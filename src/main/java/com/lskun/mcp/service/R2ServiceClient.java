@@ -3,23 +3,17 @@ package com.lskun.mcp.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.tool.annotation.Tool;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.ai.util.json.JsonParser;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
-import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.http.SdkHttpClient;
-import software.amazon.awssdk.http.apache.ApacheHttpClient;
-import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.S3Configuration;
 import software.amazon.awssdk.services.s3.model.*;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.URI;
-import java.time.Duration;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -29,37 +23,30 @@ import java.util.Map;
 public class R2ServiceClient {
 
     private static final Logger logger = LoggerFactory.getLogger(R2ServiceClient.class);
-    private final S3Client s3Client;
+    private final R2ClientRegistry clientRegistry;
+    private final R2ReadCoalescer readCoalescer;
+    private final ResumableTransfers resumableTransfers;
+    private final TextBufferPool textBufferPool;
+    private final R2WriteBehindService writeBehindService;
+    private final ContentTypeRegistry contentTypes;
 
     /**
-     * Initializes the Cloudflare R2 client with the given credentials and endpoint.
+     * Uses the client registry to resolve the R2 profile (account) selected by each tool call.
+     * S3 clients are created lazily on first use of a profile. Reads go through the coalescer so
+     * that concurrent identical requests share one R2 round trip. Large file uploads and downloads
+     * are checkpointed so they can be resumed after a failure, text reads are bounded by the
+     * text buffer pool, and write-behind uploads are handed to the write-behind spool. Missing
+     * content types are resolved by the content type registry.
      */
-    public R2ServiceClient(
-            @Value("${r2.access-key-id}") String accessKeyId,
-            @Value("${r2.secret-access-key}") String secretAccessKey,
-            @Value("${r2.endpoint}") String endpoint) {
-        logger.info("Initializing R2ServiceClient with endpoint: {}", endpoint);
-        
-        // 创建HTTP客户端，设置更长的超时时间
-        SdkHttpClient httpClient = ApacheHttpClient.builder()
-                .connectionTimeout(Duration.ofSeconds(30))
-                .socketTimeout(Duration.ofSeconds(120))
-                .build();
-        
-        // 创建最简单的S3客户端配置
-        this.s3Client = S3Client.builder()
-                .credentialsProvider(StaticCredentialsProvider.create(
-                        AwsBasicCredentials.create(accessKeyId, secretAccessKey)))
-                .endpointOverride(URI.create(endpoint))
-                .region(Region.of("auto"))
-                .serviceConfiguration(S3Configuration.builder()
-                        .checksumValidationEnabled(false)
-                        .pathStyleAccessEnabled(true)
-                        .build())
-                .httpClient(httpClient)
-                .build();
-                
-        logger.info("R2ServiceClient initialized successfully");
+    public R2ServiceClient(R2ClientRegistry clientRegistry, R2ReadCoalescer readCoalescer,
+                           ResumableTransfers resumableTransfers, TextBufferPool textBufferPool,
+                           R2WriteBehindService writeBehindService, ContentTypeRegistry contentTypes) {
+        this.clientRegistry = clientRegistry;
+        this.readCoalescer = readCoalescer;
+        this.resumableTransfers = resumableTransfers;
+        this.textBufferPool = textBufferPool;
+        this.writeBehindService = writeBehindService;
+        this.contentTypes = contentTypes;
     }
 
     /**
@@ -68,11 +55,12 @@ public class R2ServiceClient {
     @Tool(description = """
     List all buckets in Cloudflare R2.
     """)
-    public List<String> listBuckets() {
+    public List<String> listBuckets(
+            @ToolParam(required = false, description = R2ClientRegistry.PROFILE_PARAM_DESCRIPTION) String profile) {
         logger.info("Fetching list of buckets.");
         try {
             List<String> bucketNames = new ArrayList<>();
-            ListBucketsResponse response = s3Client.listBuckets();
+            ListBucketsResponse response = clientRegistry.client(profile).listBuckets();
             for (Bucket bucket : response.buckets()) {
                 bucketNames.add(bucket.name());
             }
@@ -90,10 +78,11 @@ public class R2ServiceClient {
     @Tool(description = """
     Create a new bucket in Cloudflare R2.
     """)
-    public String createBucket(String bucketName) {
+    public String createBucket(String bucketName,
+            @ToolParam(required = false, description = R2ClientRegistry.PROFILE_PARAM_DESCRIPTION) String profile) {
         logger.info("Creating bucket: {}", bucketName);
         try {
-            s3Client.createBucket(CreateBucketRequest.builder()
+            clientRegistry.client(profile).createBucket(CreateBucketRequest.builder()
                     .bucket(bucketName)
                     .build());
             logger.info("Bucket '{}' created successfully.", bucketName);
@@ -110,10 +99,11 @@ public class R2ServiceClient {
     @Tool(description = """
     Delete a bucket from Cloudflare R2.
     """)
-    public String deleteBucket(String bucketName) {
+    public String deleteBucket(String bucketName,
+            @ToolParam(required = false, description = R2ClientRegistry.PROFILE_PARAM_DESCRIPTION) String profile) {
         logger.info("Deleting bucket: {}", bucketName);
         try {
-            s3Client.deleteBucket(DeleteBucketRequest.builder()
+            clientRegistry.client(profile).deleteBucket(DeleteBucketRequest.builder()
                     .bucket(bucketName)
                     .build());
             logger.info("Bucket '{}' deleted successfully.", bucketName);
@@ -125,12 +115,40 @@ public class R2ServiceClient {
     }
 
     /**
-     * Lists objects in a bucket.
+     * Lists objects in a bucket of the default profile with every field included.
+     */
+    public List<ObjectListing.Entry> listObjects(String bucketName, String prefix) {
+        return ObjectListing.toEntries(listObjectContents(bucketName, prefix, null), ObjectListing.Projection.ALL);
+    }
+
+    /**
+     * Lists objects in a bucket with field projection and a choice of encoding.
      */
     @Tool(description = """
     List objects in a bucket.
-    """)
-    public List<Map<String, String>> listObjects(String bucketName, String prefix) {
+    Parameters:
+    - bucketName (string) - name of the bucket
+    - prefix (string, optional) - only list keys starting with this prefix
+    - fields (string, optional) - comma separated fields to return besides the key: "size", "lastModified"
+      (e.g. "key" for keys only, "key,size"); defaults to all fields
+    - format (string, optional) - "json" (default, array of objects), "ndjson" (one JSON object per line)
+      or "columnar" (one array per field); prefer "ndjson" or "columnar" for large listings
+    """, resultConverter = RawTextResultConverter.class)
+    public String listObjects(String bucketName, @ToolParam(required = false) String prefix,
+            @ToolParam(required = false) String fields, @ToolParam(required = false) String format,
+            @ToolParam(required = false, description = R2ClientRegistry.PROFILE_PARAM_DESCRIPTION) String profile) {
+        ObjectListing.Projection projection = ObjectListing.Projection.parse(fields);
+        ObjectListing.Format listingFormat = ObjectListing.Format.parse(format);
+        List<S3Object> contents = listObjectContents(bucketName, prefix, profile);
+        // 返回类型必须是具体类型：Spring AI会忽略返回Object（视为函数式类型）的@Tool方法
+        return switch (listingFormat) {
+            case JSON -> JsonParser.toJson(ObjectListing.toEntries(contents, projection));
+            case NDJSON -> ObjectListing.toNdjson(contents, projection);
+            case COLUMNAR -> JsonParser.toJson(ObjectListing.toColumns(contents, projection));
+        };
+    }
+
+    private List<S3Object> listObjectContents(String bucketName, String prefix, String profile) {
         logger.info("Listing objects in bucket: {} with prefix: {}", bucketName, prefix);
         try {
             ListObjectsV2Request request = ListObjectsV2Request.builder()
@@ -138,19 +156,10 @@ public class R2ServiceClient {
                     .prefix(prefix)
                     .build();
             
-            ListObjectsV2Response response = s3Client.listObjectsV2(request);
-            List<Map<String, String>> objects = new ArrayList<>();
+            ListObjectsV2Response response = readCoalescer.listObjectsV2(profile, request);
             
-            for (S3Object s3Object : response.contents()) {
-                Map<String, String> objectInfo = new HashMap<>();
-                objectInfo.put("key", s3Object.key());
-                objectInfo.put("size", String.valueOf(s3Object.size()));
-                objectInfo.put("lastModified", s3Object.lastModified().toString());
-                objects.add(objectInfo);
-            }
-            
-            logger.info("Found {} objects in bucket: {}", objects.size(), bucketName);
-            return objects;
+            logger.info("Found {} objects in bucket: {}", response.contents().size(), bucketName);
+            return response.contents();
         } catch (S3Exception e) {
             logger.error("Failed to list objects in bucket '{}' with prefix '{}': {}", bucketName, prefix, e.getMessage(), e);
             throw new RuntimeException("Failed to list objects in bucket '" + bucketName + "' with prefix '" + prefix + "': " + e.getMessage(), e);
@@ -176,6 +185,11 @@ public class R2ServiceClient {
       * Path: local file system path to the file
     - contentType (string) - MIME type of the content (optional, will be inferred from file extension if not provided)
     - contentFormat (string) - format of the content: "text" (default), "base64", or "path"
+      (large files given by path are uploaded in checkpointed parts; if interrupted, continue with resumeTransfer)
+    - writeBehind (boolean, optional) - if true, return as soon as the content is durably spooled to local disk
+      and upload it in the background; repeated writes to the same key only upload the latest version.
+      Reads may return the previous version until the upload finishes; call flushWriteBehind to wait for it.
+      Not available for files above the resumable upload threshold.
     
     Common MIME types by category:
     Text files:
@@ -216,7 +230,9 @@ public class R2ServiceClient {
     - IllegalArgumentException: If content format is invalid or file not found
     - S3Exception: If upload fails due to S3 service issues
     """)
-    public String uploadObject(String bucketName, String key, String content, String contentType, String contentFormat) {
+    public String uploadObject(String bucketName, String key, String content, String contentType, String contentFormat,
+            @ToolParam(required = false) Boolean writeBehind,
+            @ToolParam(required = false, description = R2ClientRegistry.PROFILE_PARAM_DESCRIPTION) String profile) {
         logger.info("Uploading object to bucket: {} with key: {}, contentFormat: {}", bucketName, key, contentFormat);
         
         // 参数验证
@@ -240,12 +256,18 @@ public class R2ServiceClient {
         
         try {
             RequestBody requestBody;
+            File resumableFile = null;
+            byte[] sniffHead = null;
             
             switch (format.toLowerCase()) {
                 case "text":
                     // 直接使用文本内容
                     logger.info("Processing as text content, size: {} characters", content.length());
                     requestBody = RequestBody.fromString(content);
+                    if (contentTypes.needsSniffing(key)) {
+                        sniffHead = content.substring(0, Math.min(content.length(), ContentTypeRegistry.SNIFF_LENGTH))
+                                .getBytes(StandardCharsets.UTF_8);
+                    }
                     break;
                     
                 case "base64":
@@ -254,6 +276,7 @@ public class R2ServiceClient {
                         byte[] binaryData = java.util.Base64.getDecoder().decode(content);
                         logger.info("Decoded Base64 content, size: {} bytes", binaryData.length);
                         requestBody = RequestBody.fromBytes(binaryData);
+                        sniffHead = binaryData;
                     } catch (IllegalArgumentException e) {
                         throw new IllegalArgumentException("Invalid Base64 content: " + e.getMessage(), e);
                     }
@@ -270,14 +293,20 @@ public class R2ServiceClient {
                             throw new IllegalArgumentException("Path is not a file: " + content);
                         }
                         
-                        // 如果未提供contentType，从文件扩展名推断
+                        // 如果未提供contentType，从文件扩展名推断，扩展名缺失或有歧义时读取文件头识别
                         String finalContentType = contentType;
                         if (finalContentType == null || finalContentType.trim().isEmpty()) {
-                            finalContentType = inferContentTypeFromKey(file.getName());
+                            finalContentType = contentTypes.detect(file.getName(), file.toPath());
                         }
                         
                         logger.info("Reading from file: {}, size: {} bytes", content, file.length());
-                        requestBody = RequestBody.fromFile(file);
+                        if (resumableTransfers.isResumable(file.length())) {
+                            // 大文件走可续传的分段上传，中断后可通过resumeTransfer继续
+                            resumableFile = file;
+                            requestBody = null;
+                        } else {
+                            requestBody = RequestBody.fromFile(file);
+                        }
                         contentType = finalContentType;
                     } catch (Exception e) {
                         throw new IllegalArgumentException("Failed to read file: " + content + " - " + e.getMessage(), e);
@@ -288,12 +317,27 @@ public class R2ServiceClient {
                     throw new IllegalArgumentException("Invalid content format: " + format + ". Must be 'text', 'base64', or 'path'.");
             }
             
-            // 如果未提供contentType（且不是文件路径），尝试从key推断
+            // 如果未提供contentType（且不是文件路径），从key推断，扩展名缺失或有歧义时按内容识别
             if ((contentType == null || contentType.trim().isEmpty()) && !"path".equalsIgnoreCase(format)) {
-                contentType = inferContentTypeFromKey(key);
+                contentType = contentTypes.detect(key, sniffHead, sniffHead == null ? 0 : sniffHead.length);
                 logger.info("Content type inferred from key: {}", contentType);
             }
             
+            if (Boolean.TRUE.equals(writeBehind)) {
+                if (resumableFile != null) {
+                    throw new IllegalArgumentException("File is too large for writeBehind: " + content
+                            + " - upload it without writeBehind or with submitUploadJob");
+                }
+                // 先确认profile存在，避免把无法上传的写入落盘
+                writeBehindService.enqueue(clientRegistry.resolve(profile), bucketName, key, contentType, requestBody);
+                return "Object queued for upload to bucket: '" + bucketName + "' with key: '" + key
+                        + "' (write-behind; call flushWriteBehind to wait until it is uploaded).";
+            }
+
+            if (resumableFile != null) {
+                return uploadResumable(bucketName, key, resumableFile, contentType, profile);
+            }
+            
             // 上传对象
             PutObjectRequest putObjectRequest = PutObjectRequest.builder()
                     .bucket(bucketName)
@@ -301,7 +345,7 @@ public class R2ServiceClient {
                     .contentType(contentType)
                     .build();
             
-            PutObjectResponse response = s3Client.putObject(putObjectRequest, requestBody);
+            PutObjectResponse response = clientRegistry.client(profile).putObject(putObjectRequest, requestBody);
             
             logger.info("Object uploaded successfully to bucket: '{}' with key: '{}', etag: '{}'", 
                     bucketName, key, response.eTag());
@@ -313,6 +357,22 @@ public class R2ServiceClient {
         }
     }
 
+    private String uploadResumable(String bucketName, String key, File file, String contentType, String profile) {
+        try {
+            String eTag = resumableTransfers.upload(profile, bucketName, key, file.toPath(), contentType,
+                    ResumableTransfers.Progress.NONE);
+            logger.info("Object uploaded successfully to bucket: '{}' with key: '{}', etag: '{}'", bucketName, key, eTag);
+            return "Object uploaded successfully to bucket: '" + bucketName + "' with key: '" + key + "'.";
+        } catch (IOException e) {
+            logger.error("Failed to upload file '{}' to bucket '{}' with key '{}': {}", file, bucketName, key, e.getMessage(), e);
+            throw new RuntimeException("Failed to upload object to bucket '" + bucketName + "' with key '" + key
+                    + "': " + e.getMessage() + " (use resumeTransfer to continue)", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while uploading object to bucket '" + bucketName + "' with key '" + key + "'", e);
+        }
+    }
+
     /**
      * 统一的对象下载方法，根据内容类型和参数自动处理文本或二进制数据。
      * 不会返回byte[]类型，避免Cursor处理二进制数据的问题。
@@ -326,10 +386,16 @@ public class R2ServiceClient {
     - key (string) - object key/filename to download;
     - destinationPath (string, optional) - local path where the file should be saved (if not provided, file will be saved in the current project root directory using the original key as filename);
     - responseType (string, optional) - force specific handling: 'text' to return content as text, 'file' to save to file.
-    Returns: For text files without destinationPath - the file content as String;
+    - offset (integer, optional) - text mode only: byte offset to start reading from, as given by a truncation notice.
+    Returns: For text files without destinationPath - the file content as String, decoded with the charset of the
+    object's Content-Type (UTF-8 by default). Large text is returned in pieces: a piece ends with a
+    '[Truncated: ...]' notice giving the offset to pass in the next call;
     For binary files or when destinationPath is provided - the path to the saved file.
+    Large objects saved to a file are fetched in checkpointed ranges; if interrupted, continue with resumeTransfer.
     """)
-    public String downloadObject(String bucketName, String key, String destinationPath, String responseType) {
+    public String downloadObject(String bucketName, String key, String destinationPath, String responseType,
+            @ToolParam(required = false, description = "text mode only: byte offset to start reading from") Long offset,
+            @ToolParam(required = false, description = R2ClientRegistry.PROFILE_PARAM_DESCRIPTION) String profile) {
         logger.info("Downloading object from bucket: {} with key: {}, destinationPath: {}, responseType: {}", 
                 bucketName, key, destinationPath, responseType);
         
@@ -343,19 +409,10 @@ public class R2ServiceClient {
         }
         
         try {
-            // 构建获取对象请求
-            GetObjectRequest request = GetObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(key)
-                    .build();
-            
             // 尝试获取对象元数据
             HeadObjectResponse metadata;
             try {
-                metadata = s3Client.headObject(HeadObjectRequest.builder()
-                        .bucket(bucketName)
-                        .key(key)
-                        .build());
+                metadata = readCoalescer.headObject(profile, bucketName, key);
             } catch (S3Exception e) {
                 logger.error("Failed to get object metadata: {}", e.getMessage());
                 throw new RuntimeException("Object does not exist or cannot be accessed in bucket '" + bucketName + 
@@ -375,17 +432,36 @@ public class R2ServiceClient {
                 logger.info("Using forced response type: {}", textMode ? "text" : "file");
             } else {
                 // 根据内容类型和destinationPath自动决定
-                textMode = isTextContentType(contentType) && (destinationPath == null || destinationPath.trim().isEmpty());
+                textMode = contentTypes.isText(contentType) && (destinationPath == null || destinationPath.trim().isEmpty());
                 logger.info("Auto-detected response mode: {}", textMode ? "text" : "file");
             }
             
             if (textMode) {
-                // 文本模式：直接返回内容
-                ResponseInputStream<GetObjectResponse> response = s3Client.getObject(request);
-                try {
-                    String textContent = new String(response.readAllBytes());
-                    logger.info("Object downloaded as text, size: {} characters", textContent.length());
-                    return textContent;
+                // 文本模式：每次最多读取r2.text.max-bytes字节，超出部分通过offset分段读取
+                long start = offset == null ? 0 : offset;
+                if (start < 0 || (start > 0 && start >= contentLength)) {
+                    throw new IllegalArgumentException("Offset " + start + " is outside the object (" + contentLength + " bytes)");
+                }
+                long end = Math.min(contentLength, start + textBufferPool.maxBytes());
+                String range = start == 0 && end == contentLength ? null : "bytes=" + start + "-" + (end - 1);
+                Charset charset = TextBufferPool.charsetOf(contentType);
+
+                GetObjectRequest request = GetObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .range(range)
+                        .build();
+                // 响应流直接读入池化缓冲区并解码，不经过读合并，避免再复制一份响应体
+                try (InputStream in = clientRegistry.client(profile).getObject(request)) {
+                    TextBufferPool.TextChunk chunk = textBufferPool.read(in, charset, end == contentLength);
+                    long next = start + chunk.bytesConsumed();
+                    logger.info("Object downloaded as text ({}), bytes {}-{} of {}, size: {} characters",
+                            charset.name(), start, next, contentLength, chunk.text().length());
+                    if (next < contentLength) {
+                        return chunk.text() + "\n\n[Truncated: returned bytes " + start + "-" + (next - 1) + " of "
+                                + contentLength + ". Call downloadObject again with offset=" + next + " to continue.]";
+                    }
+                    return chunk.text();
                 } catch (IOException e) {
                     logger.error("Error reading object content: {}", e.getMessage(), e);
                     throw new RuntimeException("Error reading object from bucket '" + bucketName + 
@@ -423,8 +499,37 @@ public class R2ServiceClient {
                     }
                 }
                 
+                if (resumableTransfers.isResumable(contentLength)) {
+                    // 大对象分段下载并记录检查点，中断后可通过resumeTransfer继续
+                    try {
+                        resumableTransfers.download(profile, bucketName, key, destinationFile.toPath(), metadata,
+                                ResumableTransfers.Progress.NONE);
+                    } catch (IOException e) {
+                        logger.error("Failed to download object to file '{}': {}", finalPath, e.getMessage(), e);
+                        throw new RuntimeException("Failed to write object from bucket '" + bucketName +
+                                "' with key '" + key + "' to file '" + finalPath + "': " + e.getMessage() +
+                                " (use resumeTransfer to continue)", e);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Interrupted while downloading object from bucket '" + bucketName +
+                                "' with key '" + key + "'", e);
+                    }
+                    logger.info("Object downloaded successfully to file: {}", finalPath);
+                    return "Object from bucket '" + bucketName + "' with key '" + key +
+                           "' downloaded to file: '" + finalPath + "'";
+                }
+
                 // 下载到文件
-                s3Client.getObject(request, software.amazon.awssdk.core.sync.ResponseTransformer.toFile(destinationFile));
+                R2ReadCoalescer.SharedObjectBody body = readCoalescer.getObject(profile, bucketName, key, null);
+                try {
+                    body.writeTo(destinationFile.toPath());
+                } catch (IOException e) {
+                    logger.error("Failed to write object to file '{}': {}", finalPath, e.getMessage(), e);
+                    throw new RuntimeException("Failed to write object from bucket '" + bucketName + 
+                            "' with key '" + key + "' to file '" + finalPath + "': " + e.getMessage(), e);
+                } finally {
+                    body.release();
+                }
                 
                 logger.info("Object downloaded successfully to file: {}", finalPath);
                 return "Object from bucket '" + bucketName + "' with key '" + key + 
@@ -438,38 +543,17 @@ public class R2ServiceClient {
         }
     }
 
-    /**
-     * Helper method to determine if a content type is a text type
-     */
-    private boolean isTextContentType(String contentType) {
-        if (contentType == null) {
-            return false; // Assume binary if unknown
-        }
-        
-        contentType = contentType.toLowerCase();
-        
-        // Common text content types
-        return contentType.startsWith("text/") || 
-               contentType.equals("application/json") ||
-               contentType.equals("application/xml") ||
-               contentType.equals("application/javascript") ||
-               contentType.equals("application/typescript") ||
-               contentType.equals("application/xhtml+xml") ||
-               contentType.equals("application/x-www-form-urlencoded") ||
-               contentType.contains("+json") ||
-               contentType.contains("+xml");
-    }
-
     /**
      * Deletes an object from a bucket.
      */
     @Tool(description = """
     Delete an object from a bucket.
     """)
-    public String deleteObject(String bucketName, String key) {
+    public String deleteObject(String bucketName, String key,
+            @ToolParam(required = false, description = R2ClientRegistry.PROFILE_PARAM_DESCRIPTION) String profile) {
         logger.info("Deleting object from bucket: {} with key: {}", bucketName, key);
         try {
-            s3Client.deleteObject(DeleteObjectRequest.builder()
+            clientRegistry.client(profile).deleteObject(DeleteObjectRequest.builder()
                     .bucket(bucketName)
                     .key(key)
                     .build());
@@ -488,13 +572,11 @@ public class R2ServiceClient {
     @Tool(description = """
     Get object metadata.
     """)
-    public Map<String, String> getObjectMetadata(String bucketName, String key) {
+    public Map<String, String> getObjectMetadata(String bucketName, String key,
+            @ToolParam(required = false, description = R2ClientRegistry.PROFILE_PARAM_DESCRIPTION) String profile) {
         logger.info("Getting metadata for object in bucket: {} with key: {}", bucketName, key);
         try {
-            HeadObjectResponse response = s3Client.headObject(HeadObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(key)
-                    .build());
+            HeadObjectResponse response = readCoalescer.headObject(profile, bucketName, key);
             
             Map<String, String> metadata = new HashMap<>();
             metadata.put("contentType", response.contentType());
@@ -509,115 +591,4 @@ public class R2ServiceClient {
             throw new RuntimeException("Failed to get metadata for object in bucket '" + bucketName + "' with key '" + key + "': " + e.getMessage(), e);
         }
     }
-
-    /**
-     * 根据文件扩展名推断contentType
-     */
-    private String inferContentTypeFromKey(String key) {
-        String extension = "";
-        int lastDot = key.lastIndexOf('.');
-        if (lastDot > 0) {
-            extension = key.substring(lastDot + 1).toLowerCase();
-        }
-        
-        // 根据文件扩展名映射到MIME类型
-        Map<String, String> extensionToMimeType = new HashMap<>();
-        
-        // 文本文件
-        extensionToMimeType.put("txt", "text/plain");
-        extensionToMimeType.put("html", "text/html");
-        extensionToMimeType.put("htm", "text/html");
-        extensionToMimeType.put("xml", "text/xml");
-        extensionToMimeType.put("csv", "text/csv");
-        extensionToMimeType.put("md", "text/markdown");
-        extensionToMimeType.put("markdown", "text/markdown");
-        extensionToMimeType.put("json", "application/json");
-        extensionToMimeType.put("js", "application/javascript");
-        extensionToMimeType.put("ts", "application/typescript");
-        extensionToMimeType.put("css", "text/css");
-        extensionToMimeType.put("rtf", "application/rtf");
-        extensionToMimeType.put("yaml", "text/yaml");
-        extensionToMimeType.put("yml", "text/yaml");
-        
-        // 二进制文档文件
-        extensionToMimeType.put("pdf", "application/pdf");
-        extensionToMimeType.put("doc", "application/msword");
-        extensionToMimeType.put("docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document");
-        extensionToMimeType.put("xls", "application/vnd.ms-excel");
-        extensionToMimeType.put("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-        extensionToMimeType.put("ppt", "application/vnd.ms-powerpoint");
-        extensionToMimeType.put("pptx", "application/vnd.openxmlformats-officedocument.presentationml.presentation");
-        extensionToMimeType.put("odt", "application/vnd.oasis.opendocument.text");
-        extensionToMimeType.put("ods", "application/vnd.oasis.opendocument.spreadsheet");
-        extensionToMimeType.put("odp", "application/vnd.oasis.opendocument.presentation");
-        
-        // 图片文件
-        extensionToMimeType.put("jpg", "image/jpeg");
-        extensionToMimeType.put("jpeg", "image/jpeg");
-        extensionToMimeType.put("png", "image/png");
-        extensionToMimeType.put("gif", "image/gif");
-        extensionToMimeType.put("svg", "image/svg+xml");
-        extensionToMimeType.put("webp", "image/webp");
-        extensionToMimeType.put("ico", "image/x-icon");
-        extensionToMimeType.put("bmp", "image/bmp");
-        extensionToMimeType.put("tiff", "image/tiff");
-        extensionToMimeType.put("tif", "image/tiff");
-        
-        // 音频文件
-        extensionToMimeType.put("mp3", "audio/mpeg");
-        extensionToMimeType.put("wav", "audio/wav");
-        extensionToMimeType.put("ogg", "audio/ogg");
-        extensionToMimeType.put("m4a", "audio/mp4");
-        extensionToMimeType.put("flac", "audio/flac");
-        extensionToMimeType.put("aac", "audio/aac");
-        
-        // 视频文件
-        extensionToMimeType.put("mp4", "video/mp4");
-        extensionToMimeType.put("avi", "video/x-msvideo");
-        extensionToMimeType.put("webm", "video/webm");
-        extensionToMimeType.put("mkv", "video/x-matroska");
-        extensionToMimeType.put("mov", "video/quicktime");
-        extensionToMimeType.put("wmv", "video/x-ms-wmv");
-        extensionToMimeType.put("flv", "video/x-flv");
-        
-        // 压缩文件
-        extensionToMimeType.put("zip", "application/zip");
-        extensionToMimeType.put("rar", "application/vnd.rar");
-        extensionToMimeType.put("7z", "application/x-7z-compressed");
-        extensionToMimeType.put("tar", "application/x-tar");
-        extensionToMimeType.put("gz", "application/gzip");
-        
-        // 字体文件
-        extensionToMimeType.put("ttf", "font/ttf");
-        extensionToMimeType.put("otf", "font/otf");
-        extensionToMimeType.put("woff", "font/woff");
-        extensionToMimeType.put("woff2", "font/woff2");
-        
-        // 代码和编程文件
-        extensionToMimeType.put("java", "text/x-java-source");
-        extensionToMimeType.put("py", "text/x-python");
-        extensionToMimeType.put("cpp", "text/x-c++src");
-        extensionToMimeType.put("c", "text/x-csrc");
-        extensionToMimeType.put("cs", "text/x-csharp");
-        extensionToMimeType.put("php", "application/x-php");
-        extensionToMimeType.put("rb", "text/x-ruby");
-        extensionToMimeType.put("go", "text/x-go");
-        extensionToMimeType.put("swift", "text/x-swift");
-        
-        // 其他常见文件类型
-        extensionToMimeType.put("exe", "application/x-msdownload");
-        extensionToMimeType.put("bin", "application/octet-stream");
-        extensionToMimeType.put("dll", "application/x-msdownload");
-        extensionToMimeType.put("iso", "application/x-iso9660-image");
-        extensionToMimeType.put("apk", "application/vnd.android.package-archive");
-        extensionToMimeType.put("dmg", "application/x-apple-diskimage");
-        
-        logger.debug("Inferring content type for extension: {}", extension);
-        
-        // 返回匹配的MIME类型，如果没有匹配项则返回通用的二进制流类型
-        String contentType = extensionToMimeType.getOrDefault(extension, "application/octet-stream");
-        logger.debug("Inferred content type: {}", contentType);
-        
-        return contentType;
-    }
 }
\ No newline at end of file
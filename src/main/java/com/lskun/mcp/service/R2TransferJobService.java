@@ -0,0 +1,475 @@
+package com.lskun.mcp.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs large uploads and downloads in the background so tool calls return a job id immediately.
+ * <p>
+ * Jobs execute on {@code r2.jobs.workers} threads behind a queue of at most {@code r2.jobs.queue-capacity}
+ * waiting jobs; submissions beyond that are rejected instead of piling up. Transfers larger than
+ * {@code r2.resumable.threshold-bytes} go through {@link ResumableTransfers}, so a failed, cancelled or
+ * interrupted job can be continued later with {@code resumeTransfer}. Finished jobs are kept in memory for
+ * status queries until {@code r2.jobs.max-finished-jobs} is exceeded; job state itself does not survive a
+ * restart, but the checkpoints of large transfers do.
+ */
+@Service
+public class R2TransferJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(R2TransferJobService.class);
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final R2ClientRegistry clientRegistry;
+    private final ResumableTransfers resumableTransfers;
+    private final ContentTypeRegistry contentTypes;
+    private final int queueCapacity;
+    private final int maxFinishedJobs;
+    private final ThreadPoolExecutor jobExecutor;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, TransferJob> jobs = new LinkedHashMap<>();
+
+    public R2TransferJobService(
+            R2ClientRegistry clientRegistry,
+            ResumableTransfers resumableTransfers,
+            ContentTypeRegistry contentTypes,
+            @Value("${r2.jobs.workers:2}") int workers,
+            @Value("${r2.jobs.queue-capacity:32}") int queueCapacity,
+            @Value("${r2.jobs.max-finished-jobs:100}") int maxFinishedJobs) {
+        this.clientRegistry = clientRegistry;
+        this.resumableTransfers = resumableTransfers;
+        this.contentTypes = contentTypes;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.maxFinishedJobs = Math.max(0, maxFinishedJobs);
+
+        int workerCount = Math.max(1, workers);
+        CustomizableThreadFactory jobThreadFactory = new CustomizableThreadFactory("r2-job-");
+        jobThreadFactory.setDaemon(true);
+        this.jobExecutor = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.queueCapacity), jobThreadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+
+    /**
+     * Point-in-time view of a transfer job; fields that do not apply yet are omitted.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record JobStatus(
+            String jobId,
+            String type,
+            String state,
+            String bucket,
+            String key,
+            String localPath,
+            long bytesTransferred,
+            Long totalBytes,
+            Double percent,
+            Long bytesPerSecond,
+            Long etaSeconds,
+            String submittedAt,
+            String startedAt,
+            String finishedAt,
+            String eTag,
+            String error) {
+    }
+
+    @Tool(description = """
+    Upload a local file to a bucket as a background job and return immediately with a job id.
+    Use getJobStatus to follow progress (bytes, rate, ETA) and cancelJob to stop it.
+    Large files are sent as parallel multipart uploads with an on-disk checkpoint, so an interrupted
+    upload can be continued with resumeTransfer.
+    Parameters:
+    - bucketName (string) - name of the bucket
+    - key (string) - object key to create
+    - filePath (string) - local file to upload
+    - contentType (string, optional) - MIME type; inferred from the file extension if omitted
+    """)
+    public JobStatus submitUploadJob(String bucketName, String key, String filePath,
+            @ToolParam(required = false) String contentType,
+            @ToolParam(required = false, description = R2ClientRegistry.PROFILE_PARAM_DESCRIPTION) String profile) {
+        validate(bucketName, key);
+        if (filePath == null || filePath.trim().isEmpty()) {
+            throw new IllegalArgumentException("File path cannot be null or empty");
+        }
+        Path source = Paths.get(filePath);
+        if (!Files.isRegularFile(source)) {
+            throw new IllegalArgumentException("File does not exist or is not a file: " + filePath);
+        }
+        String finalContentType = contentType == null || contentType.trim().isEmpty()
+                ? contentTypes.detect(source.getFileName().toString(), source)
+                : contentType;
+        String resolvedProfile = clientRegistry.resolve(profile);
+
+        TransferJob job = new TransferJob(nextId(), TransferJob.Type.UPLOAD, resolvedProfile, bucketName, key,
+                source.toAbsolutePath().toString());
+        return submit(job, () -> upload(job, source, finalContentType));
+    }
+
+    @Tool(description = """
+    Download an object to a local file as a background job and return immediately with a job id.
+    The object is written to '<destinationPath>.part' and renamed when complete; large objects are
+    fetched in checkpointed ranges, so an interrupted download can be continued with resumeTransfer.
+    Use getJobStatus to follow progress (bytes, rate, ETA) and cancelJob to stop it.
+    Parameters:
+    - bucketName (string) - name of the bucket
+    - key (string) - object key to download
+    - destinationPath (string, optional) - local file to write; a temporary file is used if omitted
+    """)
+    public JobStatus submitDownloadJob(String bucketName, String key, @ToolParam(required = false) String destinationPath,
+            @ToolParam(required = false, description = R2ClientRegistry.PROFILE_PARAM_DESCRIPTION) String profile) {
+        validate(bucketName, key);
+        Path destination;
+        if (destinationPath == null || destinationPath.trim().isEmpty()) {
+            int lastDot = key.lastIndexOf('.');
+            String extension = lastDot > 0 ? key.substring(lastDot) : "";
+            try {
+                destination = File.createTempFile("r2download_", extension).toPath();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to create temporary file for download: " + e.getMessage(), e);
+            }
+        } else {
+            destination = Paths.get(destinationPath);
+        }
+        String resolvedProfile = clientRegistry.resolve(profile);
+
+        TransferJob job = new TransferJob(nextId(), TransferJob.Type.DOWNLOAD, resolvedProfile, bucketName, key,
+                destination.toAbsolutePath().toString());
+        return submit(job, () -> download(job, destination));
+    }
+
+    @Tool(description = """
+    Get the status of a transfer job: state (queued, running, succeeded, failed, cancelled),
+    bytes transferred, total bytes, percent, average rate in bytes per second, ETA in seconds, and the error if it failed.
+    Parameters:
+    - jobId (string) - id returned by submitUploadJob or submitDownloadJob
+    """)
+    public JobStatus getJobStatus(String jobId) {
+        return findJob(jobId).status();
+    }
+
+    @Tool(description = """
+    List transfer jobs known to this server in submission order, including recently finished ones.
+    Parameters:
+    - state (string, optional) - only return jobs in this state: queued, running, succeeded, failed or cancelled
+    """)
+    public List<JobStatus> listJobs(@ToolParam(required = false) String state) {
+        TransferJob.State filter = null;
+        if (state != null && !state.trim().isEmpty()) {
+            try {
+                filter = TransferJob.State.valueOf(state.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid job state: " + state
+                        + ". Must be 'queued', 'running', 'succeeded', 'failed', or 'cancelled'.");
+            }
+        }
+        List<TransferJob> snapshot;
+        synchronized (jobs) {
+            snapshot = new ArrayList<>(jobs.values());
+        }
+        List<JobStatus> result = new ArrayList<>(snapshot.size());
+        for (TransferJob job : snapshot) {
+            if (filter == null || job.state() == filter) {
+                result.add(job.status());
+            }
+        }
+        return result;
+    }
+
+    @Tool(description = """
+    Cancel a queued or running transfer job. Finished jobs are left unchanged.
+    Large transfers keep their checkpoint and can be continued with resumeTransfer or abandoned with discardTransfer.
+    Parameters:
+    - jobId (string) - id of the job to cancel
+    """)
+    public JobStatus cancelJob(String jobId) {
+        TransferJob job = findJob(jobId);
+        if (job.cancel()) {
+            jobExecutor.purge();
+            logger.info("Transfer job {} cancelled", jobId);
+        }
+        return job.status();
+    }
+
+    /**
+     * An unfinished large transfer whose checkpoint is on disk.
+     */
+    public record ResumableTransfer(String checkpointId, String type, String profile, String bucket, String key,
+                                    String localPath, long completedBytes, long totalBytes, String updatedAt) {
+    }
+
+    @Tool(description = """
+    List unfinished large uploads and downloads that can be continued with resumeTransfer,
+    e.g. after a crash, restart, network failure or cancelled job.
+    """)
+    public List<ResumableTransfer> listResumableTransfers() {
+        List<ResumableTransfer> result = new ArrayList<>();
+        for (TransferCheckpoint checkpoint : resumableTransfers.list()) {
+            result.add(new ResumableTransfer(checkpoint.getId(), checkpoint.getType(), checkpoint.getProfile(),
+                    checkpoint.getBucket(), checkpoint.getKey(), checkpoint.getLocalPath(),
+                    checkpoint.getCompletedBytes(), checkpoint.getTotalBytes(), checkpoint.getUpdatedAt()));
+        }
+        return result;
+    }
+
+    @Tool(description = """
+    Continue an unfinished large transfer from its last completed part or range as a background job.
+    Uploads restart from scratch if the local file changed; downloads restart if the object changed.
+    Parameters:
+    - checkpointId (string) - id returned by listResumableTransfers
+    """)
+    public JobStatus resumeTransfer(String checkpointId) {
+        TransferCheckpoint checkpoint = resumableTransfers.find(checkpointId);
+        Path localPath = Paths.get(checkpoint.getLocalPath());
+        if (TransferCheckpoint.UPLOAD.equals(checkpoint.getType())) {
+            if (!Files.isRegularFile(localPath)) {
+                throw new IllegalArgumentException("Source file of transfer '" + checkpointId + "' no longer exists: " + localPath);
+            }
+            TransferJob job = new TransferJob(nextId(), TransferJob.Type.UPLOAD, checkpoint.getProfile(),
+                    checkpoint.getBucket(), checkpoint.getKey(), checkpoint.getLocalPath());
+            return submit(job, () -> upload(job, localPath, checkpoint.getContentType()));
+        }
+        TransferJob job = new TransferJob(nextId(), TransferJob.Type.DOWNLOAD, checkpoint.getProfile(),
+                checkpoint.getBucket(), checkpoint.getKey(), checkpoint.getLocalPath());
+        return submit(job, () -> download(job, localPath));
+    }
+
+    @Tool(description = """
+    Abandon an unfinished large transfer: aborts its multipart upload or deletes its partial download file,
+    then removes the checkpoint.
+    Parameters:
+    - checkpointId (string) - id returned by listResumableTransfers
+    """)
+    public String discardTransfer(String checkpointId) {
+        try {
+            resumableTransfers.discard(checkpointId);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to discard transfer '" + checkpointId + "': " + e.getMessage(), e);
+        }
+        logger.info("Resumable transfer {} discarded", checkpointId);
+        return "Transfer '" + checkpointId + "' discarded.";
+    }
+
+    private JobStatus submit(TransferJob job, Transfer transfer) {
+        synchronized (jobs) {
+            pruneFinishedJobs();
+            jobs.put(job.id(), job);
+        }
+        try {
+            job.setFuture(jobExecutor.submit(() -> run(job, transfer)));
+        } catch (RejectedExecutionException e) {
+            synchronized (jobs) {
+                jobs.remove(job.id());
+            }
+            throw new IllegalStateException("Transfer queue is full (" + queueCapacity
+                    + " jobs waiting); retry later or cancel a job", e);
+        }
+        logger.info("Transfer job {} submitted: {} {}/{} ({})", job.id(), job.type(), job.bucket(), job.key(), job.localPath());
+        return job.status();
+    }
+
+    private void run(TransferJob job, Transfer transfer) {
+        if (!job.start()) {
+            return;
+        }
+        try {
+            job.succeed(transfer.run());
+            logger.info("Transfer job {} succeeded, {} bytes", job.id(), job.status().bytesTransferred());
+        } catch (Exception e) {
+            if (job.isCancelled()) {
+                logger.info("Transfer job {} stopped after cancellation", job.id());
+            } else {
+                logger.error("Transfer job {} failed: {}", job.id(), e.getMessage(), e);
+                job.fail(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            }
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private String upload(TransferJob job, Path source, String contentType) throws IOException, InterruptedException {
+        long size = Files.size(source);
+        if (resumableTransfers.isResumable(size)) {
+            // 大文件分段上传并记录检查点；进度在每个分段被R2接受后累加
+            return resumableTransfers.upload(job.profile(), job.bucket(), job.key(), source, contentType, job);
+        }
+
+        // 小文件单次PUT；SDK重试时会重新打开文件，进度随之归零
+        job.setTotalBytes(size);
+        RequestBody body = RequestBody.fromContentProvider(() -> {
+            job.resetBytes();
+            try {
+                return new JobInputStream(Files.newInputStream(source), job);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read file '" + source + "': " + e.getMessage(), e);
+            }
+        }, size, contentType);
+        return clientRegistry.client(job.profile()).putObject(PutObjectRequest.builder()
+                .bucket(job.bucket())
+                .key(job.key())
+                .contentType(contentType)
+                .build(), body).eTag();
+    }
+
+    private String download(TransferJob job, Path destination) throws IOException, InterruptedException {
+        S3Client s3Client = clientRegistry.client(job.profile());
+        HeadObjectResponse head = s3Client.headObject(HeadObjectRequest.builder()
+                .bucket(job.bucket())
+                .key(job.key())
+                .build());
+        if (resumableTransfers.isResumable(head.contentLength())) {
+            return resumableTransfers.download(job.profile(), job.bucket(), job.key(), destination, head, job);
+        }
+
+        Path parent = destination.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path partial = ResumableTransfers.partialFile(destination);
+        boolean completed = false;
+        try (ResponseInputStream<GetObjectResponse> response = s3Client.getObject(GetObjectRequest.builder()
+                .bucket(job.bucket())
+                .key(job.key())
+                .build())) {
+            job.setTotalBytes(response.response().contentLength());
+            try (InputStream in = new JobInputStream(response, job);
+                 OutputStream out = new R2FlightEvents.LocalWriteStream(Files.newOutputStream(partial), "job-download", partial)) {
+                in.transferTo(out);
+            } catch (IOException e) {
+                // 提前结束时中止连接，避免SDK为复用连接而读完剩余数据
+                response.abort();
+                throw e;
+            }
+            try {
+                Files.move(partial, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(partial, destination, StandardCopyOption.REPLACE_EXISTING);
+            }
+            completed = true;
+            return response.response().eTag();
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(partial);
+            }
+        }
+    }
+
+    private void pruneFinishedJobs() {
+        int finished = 0;
+        for (TransferJob job : jobs.values()) {
+            if (job.state().isFinished()) {
+                finished++;
+            }
+        }
+        Iterator<TransferJob> iterator = jobs.values().iterator();
+        while (finished >= maxFinishedJobs && iterator.hasNext()) {
+            if (iterator.next().state().isFinished()) {
+                iterator.remove();
+                finished--;
+            }
+        }
+    }
+
+    private TransferJob findJob(String jobId) {
+        if (jobId == null || jobId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Job id cannot be null or empty");
+        }
+        TransferJob job;
+        synchronized (jobs) {
+            job = jobs.get(jobId.trim());
+        }
+        if (job == null) {
+            throw new IllegalArgumentException("Unknown transfer job: " + jobId);
+        }
+        return job;
+    }
+
+    private String nextId() {
+        return "job-" + sequence.incrementAndGet();
+    }
+
+    private static void validate(String bucketName, String key) {
+        if (bucketName == null || bucketName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Bucket name cannot be null or empty");
+        }
+        if (key == null || key.trim().isEmpty()) {
+            throw new IllegalArgumentException("Key cannot be null or empty");
+        }
+    }
+
+    @FunctionalInterface
+    private interface Transfer {
+        String run() throws IOException, InterruptedException;
+    }
+
+    /**
+     * Stops reading once the job is cancelled and counts the bytes read as progress.
+     */
+    private static final class JobInputStream extends FilterInputStream {
+
+        private final TransferJob job;
+
+        JobInputStream(InputStream in, TransferJob job) {
+            super(in);
+            this.job = job;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            job.checkCancelled();
+            int read = super.read(buffer, offset, Math.min(length, COPY_BUFFER_SIZE));
+            if (read > 0) {
+                job.addBytes(read);
+            }
+            return read;
+        }
+    }
+}
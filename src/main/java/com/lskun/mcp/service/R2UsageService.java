@@ -0,0 +1,299 @@
+package com.lskun.mcp.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Bucket and prefix usage analytics backed by incremental, locally persisted snapshots.
+ * <p>
+ * A usage query lists the requested root once with a {@code /} delimiter to discover its
+ * immediate child prefixes, then lists the children in parallel. Child statistics are kept
+ * in a {@link UsageSnapshot} on local disk; later queries reuse every child whose entry is
+ * still fresh and only re-list the stale ones.
+ * <p>
+ * S3 has no "modified since" listing filter, so freshness is judged from the lastModified
+ * watermark recorded at listing time: a prefix that had been quiet for a long time when it
+ * was listed is trusted for longer (a quarter of its quiet period, capped by
+ * {@code r2.usage.max-cold-age-hours}, 2 by default) than a prefix that was being written to,
+ * which is re-listed once it is older than {@code r2.usage.max-age-minutes}. Because a reused
+ * entry can miss recent writes, every prefix in the report carries its listing time and age.
+ */
+@Service
+public class R2UsageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(R2UsageService.class);
+
+    /** Snapshot entry holding the objects that sit directly under the root, outside any child prefix. */
+    static final String DIRECT_OBJECTS = "";
+
+    private final R2ClientRegistry clientRegistry;
+    private final Path snapshotDir;
+    private final long maxAgeMillis;
+    private final long maxColdAgeMillis;
+    private final ExecutorService listingExecutor;
+    private final Map<Path, Object> snapshotLocks = new ConcurrentHashMap<>();
+
+    public R2UsageService(
+            R2ClientRegistry clientRegistry,
+            @Value("${r2.usage.snapshot-dir:${user.home}/.r2-mcp/usage}") String snapshotDir,
+            @Value("${r2.usage.parallelism:8}") int parallelism,
+            @Value("${r2.usage.max-age-minutes:60}") long maxAgeMinutes,
+            @Value("${r2.usage.max-cold-age-hours:2}") long maxColdAgeHours) {
+        this.clientRegistry = clientRegistry;
+        this.snapshotDir = Paths.get(snapshotDir);
+        this.maxAgeMillis = Duration.ofMinutes(maxAgeMinutes).toMillis();
+        this.maxColdAgeMillis = Duration.ofHours(maxColdAgeHours).toMillis();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("r2-usage-");
+        threadFactory.setDaemon(true);
+        this.listingExecutor = Executors.newFixedThreadPool(Math.max(1, parallelism), threadFactory);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        listingExecutor.shutdownNow();
+    }
+
+    /**
+     * Usage of one child prefix (or of the objects directly under the root when {@code prefix} equals the root).
+     * {@code ageSeconds} is how long ago the prefix was listed; writes made since then are not counted.
+     */
+    public record PrefixUsage(
+            String prefix,
+            long objectCount,
+            long totalBytes,
+            String lastModified,
+            Map<String, Long> sizeHistogram,
+            Map<String, Long> lastModifiedHistogram,
+            String listedAt,
+            long ageSeconds,
+            boolean relisted) {
+    }
+
+    /**
+     * Aggregated usage of a bucket/prefix root together with the per child prefix breakdown.
+     */
+    public record UsageReport(
+            String bucket,
+            String prefix,
+            long objectCount,
+            long totalBytes,
+            String lastModified,
+            Map<String, Long> sizeHistogram,
+            Map<String, Long> lastModifiedHistogram,
+            List<PrefixUsage> prefixes,
+            int relistedPrefixes,
+            int reusedPrefixes,
+            String oldestListedAt,
+            long maxAgeSeconds,
+            long elapsedMillis) {
+    }
+
+    @Tool(description = """
+    Get storage usage analytics for a bucket or prefix: object count, total bytes,
+    a size histogram and a last-modified histogram (by month), broken down per immediate child prefix.
+    Results are cached in a local snapshot; later calls only re-list child prefixes whose
+    snapshot entry is stale, so repeated queries on large buckets return quickly.
+    Reused entries may miss writes made since they were listed: an entry is reused for at most
+    an hour if its prefix was recently written to, and at most 2 hours otherwise (server defaults).
+    Each prefix reports 'listedAt' and 'ageSeconds', and the report gives the oldest of them
+    ('oldestListedAt', 'maxAgeSeconds'); pass refresh=true when exact current numbers are needed.
+    Parameters:
+    - bucketName (string) - name of the bucket
+    - prefix (string, optional) - root prefix to analyze (e.g. "logs/"); empty for the whole bucket
+    - refresh (boolean, optional) - true to ignore the snapshot and re-list everything
+    """)
+    public UsageReport getPrefixUsage(String bucketName, @ToolParam(required = false) String prefix,
+            @ToolParam(required = false) Boolean refresh,
+            @ToolParam(required = false, description = R2ClientRegistry.PROFILE_PARAM_DESCRIPTION) String profile) {
+        if (bucketName == null || bucketName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Bucket name cannot be null or empty");
+        }
+        String root = prefix == null ? "" : prefix;
+        boolean forceRefresh = Boolean.TRUE.equals(refresh);
+        logger.info("Computing usage for bucket: {} with prefix: {}, refresh: {}", bucketName, root, forceRefresh);
+
+        String profileName = clientRegistry.resolve(profile);
+        Path snapshotFile = snapshotFile(profileName, bucketName, root);
+        synchronized (snapshotLocks.computeIfAbsent(snapshotFile, file -> new Object())) {
+            long start = System.currentTimeMillis();
+            try {
+                UsageSnapshot previous = forceRefresh ? null : UsageSnapshot.read(snapshotFile);
+                UsageSnapshot current = new UsageSnapshot(bucketName, root);
+                S3Client s3Client = clientRegistry.client(profileName);
+
+                // 带分隔符列出根目录：直接对象计入统计，子前缀留给并行列举
+                PrefixUsageStats direct = new PrefixUsageStats();
+                List<String> children = new ArrayList<>();
+                ListObjectsV2Request rootRequest = ListObjectsV2Request.builder()
+                        .bucket(bucketName)
+                        .prefix(root)
+                        .delimiter("/")
+                        .build();
+                for (ListObjectsV2Response page : s3Client.listObjectsV2Paginator(rootRequest)) {
+                    for (S3Object s3Object : page.contents()) {
+                        direct.add(s3Object.size(), s3Object.lastModified());
+                    }
+                    for (CommonPrefix commonPrefix : page.commonPrefixes()) {
+                        children.add(commonPrefix.prefix());
+                    }
+                }
+                direct.setListedAt(System.currentTimeMillis());
+                current.getPrefixes().put(DIRECT_OBJECTS, direct);
+
+                // 仅重新列举过期或新出现的子前缀
+                long now = System.currentTimeMillis();
+                Map<String, Future<PrefixUsageStats>> pending = new LinkedHashMap<>();
+                for (String child : children) {
+                    PrefixUsageStats cached = previous == null ? null : previous.getPrefixes().get(child);
+                    if (cached != null && isFresh(cached, now)) {
+                        current.getPrefixes().put(child, cached);
+                    } else {
+                        pending.put(child, listingExecutor.submit(() -> listPrefix(s3Client, bucketName, child)));
+                    }
+                }
+                for (Map.Entry<String, Future<PrefixUsageStats>> entry : pending.entrySet()) {
+                    current.getPrefixes().put(entry.getKey(), await(entry.getValue()));
+                }
+
+                try {
+                    current.write(snapshotFile);
+                } catch (IOException e) {
+                    logger.warn("Failed to persist usage snapshot {}: {}", snapshotFile, e.getMessage());
+                }
+
+                long end = System.currentTimeMillis();
+                UsageReport report = toReport(current, pending.keySet(), end, end - start);
+                logger.info("Usage for bucket: {} prefix: {} computed in {} ms ({} prefixes re-listed, {} reused)",
+                        bucketName, root, report.elapsedMillis(), report.relistedPrefixes(), report.reusedPrefixes());
+                return report;
+            } catch (S3Exception e) {
+                logger.error("Failed to compute usage for bucket '{}' with prefix '{}': {}", bucketName, root, e.getMessage(), e);
+                throw new RuntimeException("Failed to compute usage for bucket '" + bucketName + "' with prefix '" + root + "': " + e.getMessage(), e);
+            }
+        }
+    }
+
+    boolean isFresh(PrefixUsageStats stats, long now) {
+        long age = now - stats.getListedAt();
+        long quietPeriod = stats.getListedAt() - stats.getLastModifiedWatermark();
+        long allowedAge = Math.max(maxAgeMillis, Math.min(quietPeriod / 4, maxColdAgeMillis));
+        return age >= 0 && age < allowedAge;
+    }
+
+    private PrefixUsageStats listPrefix(S3Client s3Client, String bucketName, String prefix) {
+        PrefixUsageStats stats = new PrefixUsageStats();
+        ListObjectsV2Request request = ListObjectsV2Request.builder()
+                .bucket(bucketName)
+                .prefix(prefix)
+                .build();
+        for (ListObjectsV2Response page : s3Client.listObjectsV2Paginator(request)) {
+            for (S3Object s3Object : page.contents()) {
+                stats.add(s3Object.size(), s3Object.lastModified());
+            }
+        }
+        stats.setListedAt(System.currentTimeMillis());
+        logger.debug("Listed prefix: {} in bucket: {}, {} objects", prefix, bucketName, stats.getObjectCount());
+        return stats;
+    }
+
+    private static PrefixUsageStats await(Future<PrefixUsageStats> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while listing prefixes", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    static UsageReport toReport(UsageSnapshot snapshot, Set<String> relisted, long now, long elapsedMillis) {
+        PrefixUsageStats total = new PrefixUsageStats();
+        List<PrefixUsage> prefixes = new ArrayList<>();
+        for (Map.Entry<String, PrefixUsageStats> entry : snapshot.getPrefixes().entrySet()) {
+            PrefixUsageStats stats = entry.getValue();
+            total.merge(stats);
+            boolean direct = DIRECT_OBJECTS.equals(entry.getKey());
+            if (direct && stats.getObjectCount() == 0) {
+                continue;
+            }
+            prefixes.add(new PrefixUsage(
+                    direct ? snapshot.getPrefix() : entry.getKey(),
+                    stats.getObjectCount(),
+                    stats.getTotalBytes(),
+                    formatMillis(stats.getLastModifiedWatermark()),
+                    stats.sizeHistogramByLabel(),
+                    stats.getMonthHistogram(),
+                    formatMillis(stats.getListedAt()),
+                    ageSeconds(stats.getListedAt(), now),
+                    direct || relisted.contains(entry.getKey())));
+        }
+        int childCount = snapshot.getPrefixes().size() - 1;
+        return new UsageReport(
+                snapshot.getBucket(),
+                snapshot.getPrefix(),
+                total.getObjectCount(),
+                total.getTotalBytes(),
+                formatMillis(total.getLastModifiedWatermark()),
+                total.sizeHistogramByLabel(),
+                total.getMonthHistogram(),
+                prefixes,
+                relisted.size(),
+                childCount - relisted.size(),
+                formatMillis(total.getListedAt()),
+                ageSeconds(total.getListedAt(), now),
+                elapsedMillis);
+    }
+
+    private static long ageSeconds(long listedAt, long now) {
+        return listedAt == 0 ? 0 : Math.max(0, (now - listedAt) / 1000);
+    }
+
+    private static String formatMillis(long epochMillis) {
+        return epochMillis == 0 ? null : Instant.ofEpochMilli(epochMillis).toString();
+    }
+
+    private Path snapshotFile(String profile, String bucketName, String prefix) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(prefix.getBytes(StandardCharsets.UTF_8));
+            return snapshotDir.resolve(profile + "-" + bucketName + "-" + HexFormat.of().formatHex(digest, 0, 8) + ".json.gz");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
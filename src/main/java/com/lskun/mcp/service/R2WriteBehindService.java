@@ -0,0 +1,761 @@
+package com.lskun.mcp.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind uploads: {@code uploadObject} with {@code writeBehind=true} returns once the content is
+ * durably spooled to local disk, and a background flusher sends it to R2.
+ * <p>
+ * Every write is spooled to one file in {@code r2.write-behind.dir} (a JSON header line followed by the
+ * object data) that is fsynced and then renamed into place, so after a crash or restart the flusher picks
+ * up every write that was acknowledged. Repeated writes to the same key are coalesced: only the latest
+ * spooled version is uploaded, and a newer version is never overtaken by an older one still in flight.
+ * At most {@code r2.write-behind.concurrency} uploads run at once and at most {@code r2.write-behind.max-pending}
+ * writes are spooled; failed uploads stay spooled and are retried with exponential backoff. A write that fails
+ * {@code r2.write-behind.max-attempts} times in a row, or with a client error such as a missing bucket, is
+ * given up: its spool file is renamed to {@value #DEAD_SUFFIX} and kept, and it is reported as a dead letter
+ * until a newer write to the same key is uploaded.
+ * {@code flushWriteBehind} waits until everything written before it has reached R2.
+ * <p>
+ * Several server processes (e.g. one per MCP client) may share the spool directory, so it is guarded by an
+ * exclusive lock on {@value #LOCK_FILE}: only the process holding it spools, recovers and uploads writes, and
+ * the others refuse {@code writeBehind} until the holder exits. They retry the lock every
+ * {@code r2.write-behind.retry-delay}, so writes the holder left behind are uploaded once it is gone.
+ */
+@Service
+public class R2WriteBehindService {
+
+    private static final Logger logger = LoggerFactory.getLogger(R2WriteBehindService.class);
+
+    static final int FORMAT_VERSION = 1;
+    static final String SPOOL_SUFFIX = ".wb";
+    static final String DEAD_SUFFIX = ".dead";
+    static final String LOCK_FILE = ".lock";
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+    private static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(5);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * Uploads one spooled write; replaced in tests.
+     */
+    interface Uploader {
+        void upload(SpooledWrite write) throws Exception;
+    }
+
+    private final Uploader uploader;
+    private final Path spoolDir;
+    private final int maxPending;
+    private final Duration retryDelay;
+    private final int maxAttempts;
+    private final Duration shutdownTimeout;
+    private final ScheduledThreadPoolExecutor flusher;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Target, Entry> entries = new HashMap<>();
+    private final Map<Target, DeadWrite> deadWrites = new HashMap<>();
+    private int spooledWrites;
+    private long acceptedWrites;
+    private long coalescedWrites;
+    private long uploadedWrites;
+    private long failedAttempts;
+    private boolean shuttingDown;
+    private FileChannel lockChannel;
+    private FileLock spoolLock;
+    private ScheduledFuture<?> lockRetry;
+
+    @Autowired
+    public R2WriteBehindService(
+            R2ClientRegistry clientRegistry,
+            @Value("${r2.write-behind.dir:${user.home}/.r2-mcp/write-behind}") String spoolDir,
+            @Value("${r2.write-behind.concurrency:4}") int concurrency,
+            @Value("${r2.write-behind.max-pending:1000}") int maxPending,
+            @Value("${r2.write-behind.retry-delay:PT5S}") Duration retryDelay,
+            @Value("${r2.write-behind.max-attempts:10}") int maxAttempts,
+            @Value("${r2.write-behind.shutdown-timeout:PT10S}") Duration shutdownTimeout) {
+        this(write -> clientRegistry.client(write.target().profile()).putObject(PutObjectRequest.builder()
+                        .bucket(write.target().bucket())
+                        .key(write.target().key())
+                        .contentType(write.contentType())
+                        .build(), write.requestBody()),
+                Paths.get(spoolDir), concurrency, maxPending, retryDelay, maxAttempts, shutdownTimeout);
+    }
+
+    R2WriteBehindService(Uploader uploader, Path spoolDir, int concurrency, int maxPending,
+                         Duration retryDelay, int maxAttempts, Duration shutdownTimeout) {
+        this.uploader = uploader;
+        this.spoolDir = spoolDir.toAbsolutePath();
+        this.maxPending = Math.max(1, maxPending);
+        this.retryDelay = retryDelay;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.shutdownTimeout = shutdownTimeout;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("r2-write-behind-");
+        threadFactory.setDaemon(true);
+        this.flusher = new ScheduledThreadPoolExecutor(Math.max(1, concurrency), threadFactory);
+        this.flusher.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        // spool目录不存在时没有待恢复的写入，首次写入时再创建并加锁
+        if (Files.isDirectory(this.spoolDir) && !lockSpool()) {
+            logger.info("Write-behind spool {} is locked by another process; retrying every {}",
+                    this.spoolDir, retryDelay);
+        }
+        synchronized (this) {
+            if (spoolLock == null) {
+                long interval = Math.max(1, retryDelay.toMillis());
+                lockRetry = flusher.scheduleWithFixedDelay(this::retryLock, interval, interval, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Runs periodically while this instance does not hold the spool lock, so that it takes over the lock,
+     * and the writes left in the spool, once the process holding it exits.
+     */
+    private synchronized void retryLock() {
+        if (!shuttingDown && Files.isDirectory(spoolDir) && lockSpool()) {
+            logger.info("Acquired write-behind spool lock {}", spoolDir);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        synchronized (this) {
+            shuttingDown = true;
+        }
+        // 等待进行中的上传完成；尚未开始的写入保留在spool中，下次启动时恢复
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                flusher.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            flusher.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (spoolLock != null) {
+                try {
+                    spoolLock.release();
+                    lockChannel.close();
+                } catch (IOException e) {
+                    logger.warn("Failed to release write-behind spool lock {}: {}", spoolDir, e.getMessage());
+                }
+                spoolLock = null;
+                lockChannel = null;
+            }
+        }
+    }
+
+    /**
+     * Takes the spool lock if not held yet and then recovers the writes left in the spool.
+     *
+     * @return whether this instance holds the lock
+     */
+    private synchronized boolean lockSpool() {
+        if (spoolLock != null) {
+            return true;
+        }
+        FileChannel channel = null;
+        try {
+            Files.createDirectories(spoolDir);
+            channel = FileChannel.open(spoolDir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = channel.tryLock();
+            if (lock != null) {
+                lockChannel = channel;
+                spoolLock = lock;
+                if (lockRetry != null) {
+                    lockRetry.cancel(false);
+                    lockRetry = null;
+                }
+                recover();
+                return true;
+            }
+        } catch (OverlappingFileLockException e) {
+            // 同一JVM中的另一个实例持有锁
+        } catch (IOException e) {
+            logger.warn("Failed to lock write-behind spool {}: {}", spoolDir, e.getMessage());
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close write-behind lock file: {}", e.getMessage());
+            }
+        }
+        logger.debug("Write-behind spool {} is locked by another process", spoolDir);
+        return false;
+    }
+
+    /**
+     * Destination of a write; writes to the same target are coalesced.
+     */
+    record Target(String profile, String bucket, String key) {
+    }
+
+    /**
+     * First line of a spool file.
+     */
+    record SpoolHeader(int version, String profile, String bucket, String key, String contentType, String createdAt) {
+    }
+
+    /**
+     * A write spooled to disk. {@code firstSequence} is the oldest write to the same target this one
+     * supersedes, so a flush barrier also waits for writes that were coalesced into it.
+     */
+    record SpooledWrite(long sequence, long firstSequence, Target target, String contentType,
+                        Path file, long dataOffset, long length) {
+
+        SpooledWrite supersedes(SpooledWrite older) {
+            return new SpooledWrite(sequence, Math.min(firstSequence, older.firstSequence), target, contentType,
+                    file, dataOffset, length);
+        }
+
+        RequestBody requestBody() {
+            return RequestBody.fromContentProvider(() -> {
+                try {
+                    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                    channel.position(dataOffset);
+                    return Channels.newInputStream(channel);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read spooled write " + file + ": " + e.getMessage(), e);
+                }
+            }, length, contentType);
+        }
+    }
+
+    /**
+     * Writes of one target: at most one upload in flight and the latest write waiting behind it.
+     */
+    private static final class Entry {
+        final Target target;
+        SpooledWrite pending;
+        SpooledWrite inFlight;
+        int attempts;
+        String lastError;
+        Instant nextAttemptAt;
+
+        Entry(Target target) {
+            this.target = target;
+        }
+    }
+
+    /**
+     * A write that was given up, kept in the spool under {@value #DEAD_SUFFIX}.
+     */
+    private record DeadWrite(SpooledWrite write, int attempts, String lastError, Instant failedAt) {
+    }
+
+    /**
+     * A target whose last upload attempt failed.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record FailingWrite(String profile, String bucket, String key, int attempts, String lastError,
+                               String nextAttemptAt) {
+    }
+
+    /**
+     * A write that is no longer retried; its data stays in {@code spoolFile}.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record DeadLetter(String profile, String bucket, String key, int attempts, String lastError,
+                             String failedAt, String spoolFile) {
+    }
+
+    /**
+     * State of the write-behind queue; {@code flushed} is only set by {@code flushWriteBehind}.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record WriteBehindStatus(Boolean flushed, int pendingWrites, int uploadingWrites, long pendingBytes,
+                                    long acceptedWrites, long coalescedWrites, long uploadedWrites,
+                                    long failedAttempts, List<FailingWrite> failing, List<DeadLetter> deadLetters) {
+    }
+
+    /**
+     * Spools {@code body} and queues it for upload, superseding any queued write to the same key.
+     *
+     * @param profile resolved profile name
+     * @throws IllegalStateException if the queue is full or shutting down, or another process holds the spool
+     */
+    void enqueue(String profile, String bucketName, String key, String contentType, RequestBody body) {
+        if (!lockSpool()) {
+            throw new IllegalStateException("Write-behind spool " + spoolDir + " is in use by another process; "
+                    + "upload without writeBehind or configure a separate r2.write-behind.dir");
+        }
+        Target target = new Target(profile, bucketName, key);
+        SpooledWrite write;
+        try {
+            write = spool(target, contentType, body);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to spool write to bucket '" + bucketName + "' with key '" + key
+                    + "': " + e.getMessage(), e);
+        }
+        synchronized (this) {
+            if (shuttingDown) {
+                deleteQuietly(write.file());
+                throw new IllegalStateException("Write-behind queue is shutting down");
+            }
+            Entry entry = entries.get(target);
+            boolean coalesces = entry != null && entry.pending != null;
+            if (!coalesces && spooledWrites >= maxPending) {
+                deleteQuietly(write.file());
+                throw new IllegalStateException("Write-behind queue is full (" + maxPending
+                        + " writes pending); retry later or upload without writeBehind");
+            }
+            acceptedWrites++;
+            accept(write);
+        }
+        logger.info("Spooled write-behind upload #{} to bucket: {} with key: {}, size: {} bytes",
+                write.sequence(), bucketName, key, write.length());
+    }
+
+    /**
+     * Adds a spooled write to the queue. Concurrent writes to one key may be spooled out of order,
+     * so a write older than the one queued or in flight is dropped rather than uploaded after it.
+     */
+    private void accept(SpooledWrite write) {
+        Entry entry = entries.computeIfAbsent(write.target(), Entry::new);
+        SpooledWrite newest = entry.pending != null ? entry.pending : entry.inFlight;
+        if (newest != null && newest.sequence() > write.sequence()) {
+            coalescedWrites++;
+            deleteQuietly(write.file());
+            if (entry.pending != null) {
+                entry.pending = entry.pending.supersedes(write);
+            } else {
+                entry.inFlight = entry.inFlight.supersedes(write);
+            }
+            return;
+        }
+        if (entry.pending != null) {
+            coalescedWrites++;
+            deleteQuietly(entry.pending.file());
+            entry.pending = write.supersedes(entry.pending);
+            return;
+        }
+        spooledWrites++;
+        entry.pending = write;
+        if (entry.inFlight == null) {
+            schedule(entry, 0);
+        }
+    }
+
+    private SpooledWrite spool(Target target, String contentType, RequestBody body) throws IOException {
+        long number = sequence.incrementAndGet();
+        Path file = spoolDir.resolve(String.format("%020d", number) + SPOOL_SUFFIX);
+        Path temp = spoolDir.resolve(file.getFileName() + ".tmp");
+        byte[] header = headerBytes(new SpoolHeader(FORMAT_VERSION, target.profile(), target.bucket(), target.key(),
+                contentType, Instant.now().toString()));
+        long length;
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                 InputStream in = body.contentStreamProvider().newStream()) {
+                ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+                while (headerBuffer.hasRemaining()) {
+                    channel.write(headerBuffer);
+                }
+                OutputStream out = new R2FlightEvents.LocalWriteStream(Channels.newOutputStream(channel), "write-behind", temp);
+                length = in.transferTo(out);
+                // 数据落盘后才重命名，重命名后的文件即视为已确认的写入
+                channel.force(true);
+                out.close();
+            }
+            publish(temp, file);
+            syncDirectory();
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return new SpooledWrite(number, number, target, contentType, file, header.length, length);
+    }
+
+    /**
+     * Makes a fully written temp file visible under its final name, failing instead of replacing an
+     * existing spool file.
+     */
+    private static void publish(Path temp, Path file) throws IOException {
+        try {
+            Files.createLink(file, temp);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // 不支持硬链接的文件系统：不带REPLACE_EXISTING的移动同样在目标存在时失败
+            Files.move(temp, file);
+        }
+    }
+
+    private static byte[] headerBytes(SpoolHeader header) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MAPPER.writeValue(out, header);
+        out.write('\n');
+        return out.toByteArray();
+    }
+
+    private void syncDirectory() {
+        // 部分平台不支持对目录fsync，忽略即可
+        try (FileChannel directory = FileChannel.open(spoolDir, StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            logger.debug("Could not sync spool directory {}: {}", spoolDir, e.getMessage());
+        }
+    }
+
+    /**
+     * Reads a spool file; returns {@code null} if it is unreadable or of an unknown format.
+     */
+    static SpooledWrite read(Path file) {
+        long number = sequenceOf(file);
+        if (number < 0) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b == -1 || line.size() >= MAX_HEADER_BYTES) {
+                    return null;
+                }
+                line.write(b);
+            }
+            SpoolHeader header = MAPPER.readValue(line.toByteArray(), SpoolHeader.class);
+            if (header.version() != FORMAT_VERSION) {
+                return null;
+            }
+            long dataOffset = line.size() + 1L;
+            return new SpooledWrite(number, number, new Target(header.profile(), header.bucket(), header.key()),
+                    header.contentType(), file, dataOffset, Files.size(file) - dataOffset);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the sequence number encoded in a spool or dead letter file name, or -1 if the name is not one.
+     */
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.indexOf('.');
+        try {
+            return Long.parseLong(dot < 0 ? name : name.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Queues the writes left in the spool directory by a previous holder of the spool lock, oldest first,
+     * and reloads its dead letters.
+     */
+    private void recover() {
+        List<SpooledWrite> recovered = new ArrayList<>();
+        List<SpooledWrite> dead = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spoolDir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    // 未完成落盘的写入没有被确认过，直接删除
+                    deleteQuietly(file);
+                } else if (name.endsWith(SPOOL_SUFFIX)) {
+                    // 不可读的文件也占用其序号，新写入不会与之重名
+                    sequence.accumulateAndGet(sequenceOf(file), Math::max);
+                    SpooledWrite write = read(file);
+                    if (write == null) {
+                        logger.warn("Skipping unreadable write-behind spool file {}", file);
+                    } else {
+                        recovered.add(write);
+                    }
+                } else if (name.endsWith(DEAD_SUFFIX)) {
+                    sequence.accumulateAndGet(sequenceOf(file), Math::max);
+                    SpooledWrite write = read(file);
+                    if (write != null) {
+                        dead.add(write);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read write-behind spool " + spoolDir + ": " + e.getMessage(), e);
+        }
+        recovered.sort((a, b) -> Long.compare(a.sequence(), b.sequence()));
+        dead.sort((a, b) -> Long.compare(a.sequence(), b.sequence()));
+        synchronized (this) {
+            for (SpooledWrite write : dead) {
+                // 重启前的失败次数与错误信息没有持久化
+                addDeadWrite(new DeadWrite(write, 0, null, null));
+            }
+            for (SpooledWrite write : recovered) {
+                accept(write);
+            }
+        }
+        if (!recovered.isEmpty()) {
+            logger.info("Recovered {} write-behind uploads from {}", recovered.size(), spoolDir);
+        }
+    }
+
+    private void schedule(Entry entry, long delayMillis) {
+        try {
+            flusher.schedule(() -> flush(entry), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 关闭中：写入保留在spool中，下次启动时上传
+            logger.debug("Write-behind flusher stopped; {} stays spooled", entry.target);
+        }
+    }
+
+    private void flush(Entry entry) {
+        SpooledWrite write;
+        synchronized (this) {
+            if (entry.pending == null || entry.inFlight != null) {
+                return;
+            }
+            write = entry.pending;
+            entry.pending = null;
+            entry.inFlight = write;
+        }
+        try {
+            uploader.upload(write);
+        } catch (Exception e) {
+            failed(entry, e);
+            return;
+        }
+        deleteQuietly(write.file());
+        synchronized (this) {
+            entry.inFlight = null;
+            entry.attempts = 0;
+            entry.lastError = null;
+            entry.nextAttemptAt = null;
+            spooledWrites--;
+            uploadedWrites++;
+            DeadWrite dead = deadWrites.get(entry.target);
+            if (dead != null && dead.write().sequence() < write.sequence()) {
+                // 更新的版本已上传，放弃的旧版本不再需要
+                deadWrites.remove(entry.target);
+                deleteQuietly(dead.write().file());
+            }
+            if (entry.pending != null) {
+                schedule(entry, 0);
+            } else {
+                entries.remove(entry.target);
+            }
+            notifyAll();
+        }
+        logger.info("Write-behind upload #{} to bucket: {} with key: {} completed",
+                write.sequence(), write.target().bucket(), write.target().key());
+    }
+
+    private synchronized void failed(Entry entry, Exception e) {
+        // 上传期间入队的旧写入可能已合并到inFlight中，以它为准
+        SpooledWrite write = entry.inFlight;
+        entry.inFlight = null;
+        entry.attempts++;
+        entry.lastError = e.getMessage();
+        failedAttempts++;
+        if (entry.pending == null && (entry.attempts >= maxAttempts || isPermanent(e))) {
+            giveUp(entry, write);
+            notifyAll();
+            return;
+        }
+        if (entry.pending == null) {
+            entry.pending = write;
+        } else {
+            // 失败期间已有更新的版本，失败的旧版本不再重试
+            spooledWrites--;
+            deleteQuietly(write.file());
+            entry.pending = entry.pending.supersedes(write);
+        }
+        long delay = retryDelay.multipliedBy(1L << Math.min(entry.attempts - 1, 16)).toMillis();
+        delay = Math.min(delay, MAX_RETRY_DELAY.toMillis());
+        entry.nextAttemptAt = Instant.now().plusMillis(delay);
+        logger.warn("Write-behind upload to bucket: {} with key: {} failed (attempt {}), retrying in {} ms: {}",
+                write.target().bucket(), write.target().key(), entry.attempts, delay, e.getMessage());
+        schedule(entry, delay);
+        notifyAll();
+    }
+
+    /**
+     * Whether retrying cannot help: R2 rejected the request itself (e.g. missing bucket, access denied),
+     * rather than timing out or throttling it.
+     */
+    private static boolean isPermanent(Exception e) {
+        return e instanceof S3Exception s3Exception && s3Exception.statusCode() >= 400 && s3Exception.statusCode() < 500
+                && s3Exception.statusCode() != 408 && s3Exception.statusCode() != 429
+                && !s3Exception.isThrottlingException() && !s3Exception.isClockSkewException();
+    }
+
+    /**
+     * Stops retrying a write: renames its spool file to a dead letter and frees its place in the queue.
+     */
+    private void giveUp(Entry entry, SpooledWrite write) {
+        entries.remove(entry.target);
+        spooledWrites--;
+        Path deadFile = spoolDir.resolve(String.format("%020d", write.sequence()) + DEAD_SUFFIX);
+        SpooledWrite dead = write;
+        try {
+            Files.move(write.file(), deadFile);
+            dead = new SpooledWrite(write.sequence(), write.firstSequence(), write.target(), write.contentType(),
+                    deadFile, write.dataOffset(), write.length());
+        } catch (IOException e) {
+            // 无法重命名时保留原文件，重启后会再次尝试上传
+            logger.warn("Failed to move write-behind spool file {} to {}: {}", write.file(), deadFile, e.getMessage());
+        }
+        addDeadWrite(new DeadWrite(dead, entry.attempts, entry.lastError, Instant.now()));
+        logger.error("Gave up write-behind upload #{} to bucket: {} with key: {} after {} attempts: {}; "
+                        + "data kept in {}", write.sequence(), write.target().bucket(), write.target().key(),
+                entry.attempts, entry.lastError, dead.file());
+    }
+
+    private void addDeadWrite(DeadWrite dead) {
+        DeadWrite older = deadWrites.put(dead.write().target(), dead);
+        if (older != null) {
+            deleteQuietly(older.write().file());
+        }
+    }
+
+    @Tool(description = """
+    Wait until every write-behind upload (uploadObject with writeBehind=true) issued before this call has
+    been uploaded to R2, retrying failed uploads immediately. Writes to a key that were superseded by a
+    newer write count as uploaded once the newer version is.
+    Parameters:
+    - bucketName (string, optional) - only wait for writes to this bucket; omit to wait for all buckets
+    Only writes of the given profile (the default profile if omitted) are waited for.
+    - timeoutSeconds (integer, optional) - maximum time to wait, default 30, at most 600
+    Returns the queue status; 'flushed' is false if the timeout expired first or a write was given up
+    (listed in 'deadLetters'), and failing uploads are listed with their last error.
+    """)
+    public WriteBehindStatus flushWriteBehind(@ToolParam(required = false) String bucketName,
+            @ToolParam(required = false) Integer timeoutSeconds,
+            @ToolParam(required = false, description = R2ClientRegistry.PROFILE_PARAM_DESCRIPTION) String profile) {
+        long barrier = sequence.get();
+        String bucket = bucketName == null || bucketName.trim().isEmpty() ? null : bucketName.trim();
+        String profileName = profile == null || profile.trim().isEmpty() ? R2ClientRegistry.DEFAULT_PROFILE : profile.trim();
+        int timeout = timeoutSeconds == null ? 30 : Math.max(0, Math.min(600, timeoutSeconds));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+        synchronized (this) {
+            // 跳过退避等待，立即重试失败的上传
+            entries.values().stream()
+                    .filter(entry -> entry.attempts > 0 && matches(entry.target, profileName, bucket))
+                    .forEach(entry -> schedule(entry, 0));
+            try {
+                while (hasUnflushed(barrier, profileName, bucket)) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return status(false);
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while flushing write-behind uploads", e);
+            }
+            boolean gaveUp = deadWrites.values().stream()
+                    .anyMatch(dead -> dead.write().firstSequence() <= barrier
+                            && matches(dead.write().target(), profileName, bucket));
+            return status(!gaveUp);
+        }
+    }
+
+    @Tool(description = """
+    Show the write-behind upload queue: writes spooled and being uploaded, totals of accepted, coalesced
+    (superseded by a newer write to the same key) and uploaded writes, uploads that are failing, and
+    dead letters: writes given up after r2.write-behind.max-attempts failed attempts or an error that
+    retrying cannot fix (e.g. missing bucket). A dead letter's data stays in 'spoolFile' until a newer
+    write to the same key is uploaded.
+    """)
+    public synchronized WriteBehindStatus getWriteBehindStatus() {
+        return status(null);
+    }
+
+    private boolean hasUnflushed(long barrier, String profile, String bucket) {
+        for (Entry entry : entries.values()) {
+            if (!matches(entry.target, profile, bucket)) {
+                continue;
+            }
+            if ((entry.pending != null && entry.pending.firstSequence() <= barrier)
+                    || (entry.inFlight != null && entry.inFlight.firstSequence() <= barrier)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(Target target, String profile, String bucket) {
+        return target.profile().equals(profile) && (bucket == null || target.bucket().equals(bucket));
+    }
+
+    private WriteBehindStatus status(Boolean flushed) {
+        int pending = 0;
+        int uploading = 0;
+        long bytes = 0;
+        List<FailingWrite> failing = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.pending != null) {
+                pending++;
+                bytes += entry.pending.length();
+            }
+            if (entry.inFlight != null) {
+                uploading++;
+                bytes += entry.inFlight.length();
+            }
+            if (entry.attempts > 0) {
+                failing.add(new FailingWrite(entry.target.profile(), entry.target.bucket(), entry.target.key(),
+                        entry.attempts, entry.lastError,
+                        entry.nextAttemptAt == null ? null : entry.nextAttemptAt.toString()));
+            }
+        }
+        List<DeadLetter> deadLetters = new ArrayList<>();
+        for (DeadWrite dead : deadWrites.values()) {
+            Target target = dead.write().target();
+            deadLetters.add(new DeadLetter(target.profile(), target.bucket(), target.key(), dead.attempts(),
+                    dead.lastError(), dead.failedAt() == null ? null : dead.failedAt().toString(),
+                    dead.write().file().toString()));
+        }
+        return new WriteBehindStatus(flushed, pending, uploading, bytes, acceptedWrites, coalescedWrites,
+                uploadedWrites, failedAttempts, failing, deadLetters);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete write-behind spool file {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.lskun.mcp.service;
+
+import org.springframework.ai.tool.execution.DefaultToolCallResultConverter;
+import org.springframework.ai.tool.execution.ToolCallResultConverter;
+
+import java.lang.reflect.Type;
+
+/**
+ * Passes pre-encoded text results (e.g. NDJSON) through unchanged instead of wrapping them in a
+ * JSON string literal, which would escape every quote and newline. Any other result is converted
+ * to JSON as usual.
+ */
+public class RawTextResultConverter implements ToolCallResultConverter {
+
+    private final ToolCallResultConverter delegate = new DefaultToolCallResultConverter();
+
+    @Override
+    public String convert(Object result, Type returnType) {
+        if (result instanceof CharSequence text) {
+            return text.toString();
+        }
+        return delegate.convert(result, returnType);
+    }
+}
@@ -0,0 +1,527 @@
+package com.lskun.mcp.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListPartsRequest;
+import software.amazon.awssdk.services.s3.model.Part;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Large file transfers that survive JVM or network failures by journaling progress to disk.
+ * <p>
+ * Uploads are multipart uploads whose id and completed part ETags are kept in a {@link TransferCheckpoint};
+ * on resume the parts R2 already holds (per ListParts) are skipped. Downloads fetch ranges of
+ * {@code r2.resumable.part-size-bytes} into a preallocated {@code <destination>.part} file with
+ * If-Match on the object ETag, fsync each range before journaling it, and rename the file once complete.
+ * Transfers above {@code r2.resumable.threshold-bytes} use this path; journals live in {@code r2.resumable.dir}
+ * and are deleted when the transfer completes or is discarded.
+ */
+@Component
+public class ResumableTransfers {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResumableTransfers.class);
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_PARTS = 10_000;
+
+    /**
+     * Receives progress of a resumable transfer and may stop it.
+     */
+    interface Progress {
+
+        Progress NONE = new Progress() {
+        };
+
+        /**
+         * Called once the transfer knows its size; {@code completedBytes} were done by an earlier attempt.
+         */
+        default void onStart(long totalBytes, long completedBytes) {
+        }
+
+        default void onTransferred(long bytes) {
+        }
+
+        /**
+         * Throws to stop the transfer; the checkpoint is kept so it can be resumed later.
+         */
+        default void checkCancelled() throws InterruptedIOException {
+        }
+    }
+
+    private final R2ClientRegistry clientRegistry;
+    private final Path checkpointDir;
+    private final long thresholdBytes;
+    private final int partSize;
+    private final int concurrency;
+    private final ExecutorService partExecutor;
+    private final Set<String> active = ConcurrentHashMap.newKeySet();
+
+    public ResumableTransfers(
+            R2ClientRegistry clientRegistry,
+            @Value("${r2.resumable.dir:${user.home}/.r2-mcp/checkpoints}") String checkpointDir,
+            @Value("${r2.resumable.threshold-bytes:67108864}") long thresholdBytes,
+            @Value("${r2.resumable.part-size-bytes:16777216}") int partSize,
+            @Value("${r2.resumable.concurrency:4}") int concurrency) {
+        this.clientRegistry = clientRegistry;
+        this.checkpointDir = Paths.get(checkpointDir);
+        this.thresholdBytes = thresholdBytes;
+        this.partSize = Math.max(partSize, MultipartUploader.MIN_PART_SIZE);
+        this.concurrency = Math.max(1, concurrency);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("r2-resumable-");
+        threadFactory.setDaemon(true);
+        this.partExecutor = Executors.newFixedThreadPool(this.concurrency * 2, threadFactory);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        partExecutor.shutdownNow();
+    }
+
+    /**
+     * Whether a transfer of {@code size} bytes should be checkpointed.
+     */
+    boolean isResumable(long size) {
+        return size > thresholdBytes;
+    }
+
+    /**
+     * Uploads {@code source}, continuing a previous attempt for the same file and key if its journal is still valid.
+     *
+     * @return the ETag of the completed object
+     */
+    String upload(String profile, String bucketName, String key, Path source, String contentType, Progress progress)
+            throws IOException, InterruptedException {
+        String resolvedProfile = clientRegistry.resolve(profile);
+        Path absoluteSource = source.toAbsolutePath();
+        String id = checkpointId(TransferCheckpoint.UPLOAD, resolvedProfile, bucketName, key, absoluteSource);
+        acquire(id);
+        try {
+            S3Client s3Client = clientRegistry.client(resolvedProfile);
+            Path journal = journalFile(id);
+            long size = Files.size(absoluteSource);
+            long modifiedMillis = Files.getLastModifiedTime(absoluteSource).toMillis();
+
+            TransferCheckpoint checkpoint = TransferCheckpoint.read(journal);
+            if (checkpoint != null && (checkpoint.getTotalBytes() != size || checkpoint.getSourceModifiedMillis() != modifiedMillis)) {
+                // 源文件已变化，之前上传的分段不再可用
+                logger.info("Source file {} changed since checkpoint {}, restarting upload", absoluteSource, id);
+                abortQuietly(s3Client, checkpoint);
+                checkpoint = null;
+            }
+            if (checkpoint != null && !syncUploadedParts(s3Client, checkpoint)) {
+                checkpoint = null;
+            }
+            if (checkpoint == null) {
+                long effectivePartSize = Math.max(partSize, (size + MAX_PARTS - 1) / MAX_PARTS);
+                checkpoint = new TransferCheckpoint(id, TransferCheckpoint.UPLOAD, resolvedProfile, bucketName, key,
+                        absoluteSource.toString(), size, effectivePartSize);
+                checkpoint.setContentType(contentType);
+                checkpoint.setSourceModifiedMillis(modifiedMillis);
+                checkpoint.setUploadId(s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .contentType(contentType)
+                        .build()).uploadId());
+                checkpoint.write(journal);
+            } else {
+                logger.info("Resuming upload {} of {} with {} of {} bytes already uploaded",
+                        id, absoluteSource, checkpoint.getCompletedBytes(), size);
+            }
+
+            long effectivePartSize = checkpoint.getPartSize();
+            int partCount = (int) Math.max(1, (size + effectivePartSize - 1) / effectivePartSize);
+            progress.onStart(size, checkpoint.getCompletedBytes());
+
+            TransferCheckpoint journaled = checkpoint;
+            Semaphore inFlight = new Semaphore(concurrency);
+            List<Future<?>> parts = new ArrayList<>();
+            try (FileChannel channel = FileChannel.open(absoluteSource, StandardOpenOption.READ)) {
+                Map<Integer, String> done = checkpoint.getParts();
+                for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+                    if (done.containsKey(partNumber)) {
+                        continue;
+                    }
+                    progress.checkCancelled();
+                    failFast(parts);
+                    long offset = (partNumber - 1) * effectivePartSize;
+                    int length = (int) Math.min(effectivePartSize, size - offset);
+                    int number = partNumber;
+                    inFlight.acquire();
+                    try {
+                        parts.add(partExecutor.submit(() -> {
+                            try {
+                                byte[] buffer = readFully(channel, offset, length);
+                                String eTag = s3Client.uploadPart(UploadPartRequest.builder()
+                                                .bucket(bucketName)
+                                                .key(key)
+                                                .uploadId(journaled.getUploadId())
+                                                .partNumber(number)
+                                                .contentLength((long) length)
+                                                .build(),
+                                        RequestBody.fromBytes(buffer)).eTag();
+                                journaled.putPart(number, eTag);
+                                journaled.write(journal);
+                                progress.onTransferred(length);
+                                return null;
+                            } finally {
+                                inFlight.release();
+                            }
+                        }));
+                    } catch (RuntimeException e) {
+                        inFlight.release();
+                        throw e;
+                    }
+                }
+                for (Future<?> part : parts) {
+                    part.get();
+                }
+            } catch (ExecutionException e) {
+                throw unwrap(e, "Failed to upload part of '" + key + "'");
+            } finally {
+                parts.forEach(part -> part.cancel(true));
+            }
+
+            List<CompletedPart> completedParts = new ArrayList<>(partCount);
+            checkpoint.getParts().forEach((number, eTag) ->
+                    completedParts.add(CompletedPart.builder().partNumber(number).eTag(eTag).build()));
+            String eTag = s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(checkpoint.getUploadId())
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                    .build()).eTag();
+            Files.deleteIfExists(journal);
+            return eTag;
+        } finally {
+            active.remove(id);
+        }
+    }
+
+    /**
+     * Downloads an object described by {@code head} to {@code destination}, continuing a previous
+     * attempt if the object's ETag is unchanged and the partial file is still present.
+     *
+     * @return the ETag of the downloaded object
+     */
+    String download(String profile, String bucketName, String key, Path destination, HeadObjectResponse head,
+                    Progress progress) throws IOException, InterruptedException {
+        String resolvedProfile = clientRegistry.resolve(profile);
+        Path absoluteDestination = destination.toAbsolutePath();
+        String id = checkpointId(TransferCheckpoint.DOWNLOAD, resolvedProfile, bucketName, key, absoluteDestination);
+        acquire(id);
+        try {
+            S3Client s3Client = clientRegistry.client(resolvedProfile);
+            Path journal = journalFile(id);
+            Path partial = partialFile(absoluteDestination);
+            long size = head.contentLength();
+
+            TransferCheckpoint checkpoint = TransferCheckpoint.read(journal);
+            if (checkpoint != null && (!head.eTag().equals(checkpoint.getETag()) || checkpoint.getTotalBytes() != size
+                    || !Files.isRegularFile(partial) || Files.size(partial) != size)) {
+                logger.info("Object {}/{} or partial file changed since checkpoint {}, restarting download", bucketName, key, id);
+                checkpoint = null;
+            }
+            if (checkpoint == null) {
+                Files.createDirectories(absoluteDestination.getParent());
+                try (RandomAccessFile file = new RandomAccessFile(partial.toFile(), "rw")) {
+                    file.setLength(size);
+                }
+                checkpoint = new TransferCheckpoint(id, TransferCheckpoint.DOWNLOAD, resolvedProfile, bucketName, key,
+                        absoluteDestination.toString(), size, partSize);
+                checkpoint.setETag(head.eTag());
+                checkpoint.write(journal);
+            } else {
+                logger.info("Resuming download {} of {}/{} with {} of {} bytes already on disk",
+                        id, bucketName, key, checkpoint.getCompletedBytes(), size);
+            }
+            progress.onStart(size, checkpoint.getCompletedBytes());
+
+            TransferCheckpoint journaled = checkpoint;
+            Semaphore inFlight = new Semaphore(concurrency);
+            List<Future<?>> ranges = new ArrayList<>();
+            try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.WRITE)) {
+                for (long[] range : checkpoint.missingRanges(checkpoint.getPartSize())) {
+                    progress.checkCancelled();
+                    failFast(ranges);
+                    inFlight.acquire();
+                    try {
+                        ranges.add(partExecutor.submit(() -> {
+                            try {
+                                R2FlightEvents.LocalWriteEvent write = new R2FlightEvents.LocalWriteEvent();
+                                write.begin();
+                                write.purpose = "resumable-download";
+                                write.path = partial.toString();
+                                downloadRange(s3Client, journaled, channel, range[0], range[1], progress, write);
+                                // 数据落盘后再记录检查点，保证崩溃后不会跳过未写完的范围
+                                long syncStart = System.nanoTime();
+                                channel.force(false);
+                                write.syncTime = System.nanoTime() - syncStart;
+                                write.commit();
+                                journaled.addRange(range[0], range[1]);
+                                journaled.write(journal);
+                                return null;
+                            } finally {
+                                inFlight.release();
+                            }
+                        }));
+                    } catch (RuntimeException e) {
+                        inFlight.release();
+                        throw e;
+                    }
+                }
+                for (Future<?> range : ranges) {
+                    range.get();
+                }
+                channel.force(true);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof S3Exception s3Exception && s3Exception.statusCode() == 412) {
+                    // If-Match失败：对象在下载过程中被替换，已下载的范围作废
+                    discard(journal, journaled);
+                    throw new RuntimeException("Object '" + key + "' in bucket '" + bucketName
+                            + "' changed during download; partial data was discarded", s3Exception);
+                }
+                throw unwrap(e, "Failed to download range of '" + key + "'");
+            } finally {
+                ranges.forEach(range -> range.cancel(true));
+            }
+
+            try {
+                Files.move(partial, absoluteDestination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(partial, absoluteDestination, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.deleteIfExists(journal);
+            return checkpoint.getETag();
+        } finally {
+            active.remove(id);
+        }
+    }
+
+    private void downloadRange(S3Client s3Client, TransferCheckpoint checkpoint, FileChannel channel,
+                               long start, long end, Progress progress,
+                               R2FlightEvents.LocalWriteEvent write) throws IOException {
+        try (ResponseInputStream<GetObjectResponse> in = s3Client.getObject(GetObjectRequest.builder()
+                .bucket(checkpoint.getBucket())
+                .key(checkpoint.getKey())
+                .range("bytes=" + start + "-" + (end - 1))
+                .ifMatch(checkpoint.getETag())
+                .build())) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            long position = start;
+            try {
+                while (position < end) {
+                    progress.checkCancelled();
+                    int read = in.read(buffer, 0, (int) Math.min(buffer.length, end - position));
+                    if (read < 0) {
+                        throw new IOException("Range " + start + "-" + (end - 1) + " of '" + checkpoint.getKey()
+                                + "' ended after " + (position - start) + " bytes");
+                    }
+                    ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+                    long writeStart = System.nanoTime();
+                    while (data.hasRemaining()) {
+                        position += channel.write(data, position);
+                    }
+                    write.writeTime += System.nanoTime() - writeStart;
+                    write.bytes += read;
+                    progress.onTransferred(read);
+                }
+            } catch (IOException e) {
+                in.abort();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Lists the journals of unfinished transfers, oldest first.
+     */
+    List<TransferCheckpoint> list() {
+        List<TransferCheckpoint> checkpoints = new ArrayList<>();
+        if (!Files.isDirectory(checkpointDir)) {
+            return checkpoints;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(checkpointDir, "*.json")) {
+            for (Path file : files) {
+                TransferCheckpoint checkpoint = TransferCheckpoint.read(file);
+                if (checkpoint != null) {
+                    checkpoints.add(checkpoint);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list transfer checkpoints in '" + checkpointDir + "': " + e.getMessage(), e);
+        }
+        checkpoints.sort((a, b) -> String.valueOf(a.getUpdatedAt()).compareTo(String.valueOf(b.getUpdatedAt())));
+        return checkpoints;
+    }
+
+    TransferCheckpoint find(String checkpointId) {
+        if (checkpointId == null || !checkpointId.matches("(upload|download)-[0-9a-f]{16}")) {
+            throw new IllegalArgumentException("Invalid checkpoint id: " + checkpointId);
+        }
+        TransferCheckpoint checkpoint = TransferCheckpoint.read(journalFile(checkpointId));
+        if (checkpoint == null) {
+            throw new IllegalArgumentException("No resumable transfer with id: " + checkpointId);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Abandons a transfer: aborts the multipart upload or deletes the partial file, then removes the journal.
+     */
+    void discard(String checkpointId) throws IOException {
+        TransferCheckpoint checkpoint = find(checkpointId);
+        if (!active.add(checkpointId)) {
+            throw new IllegalStateException("Transfer '" + checkpointId + "' is in progress; cancel its job first");
+        }
+        try {
+            discard(journalFile(checkpointId), checkpoint);
+        } finally {
+            active.remove(checkpointId);
+        }
+    }
+
+    private void discard(Path journal, TransferCheckpoint checkpoint) throws IOException {
+        if (TransferCheckpoint.UPLOAD.equals(checkpoint.getType())) {
+            abortQuietly(clientRegistry.client(checkpoint.getProfile()), checkpoint);
+        } else {
+            Files.deleteIfExists(partialFile(Paths.get(checkpoint.getLocalPath())));
+        }
+        Files.deleteIfExists(journal);
+    }
+
+    /**
+     * Replaces the journaled parts with those R2 actually holds; returns {@code false} if the upload no longer exists.
+     */
+    private boolean syncUploadedParts(S3Client s3Client, TransferCheckpoint checkpoint) {
+        try {
+            TreeMap<Integer, String> uploaded = new TreeMap<>();
+            for (Part part : s3Client.listPartsPaginator(ListPartsRequest.builder()
+                    .bucket(checkpoint.getBucket())
+                    .key(checkpoint.getKey())
+                    .uploadId(checkpoint.getUploadId())
+                    .build()).parts()) {
+                long start = (part.partNumber() - 1) * checkpoint.getPartSize();
+                long expected = Math.min(checkpoint.getPartSize(), checkpoint.getTotalBytes() - start);
+                if (part.size() != null && part.size() == expected) {
+                    uploaded.put(part.partNumber(), part.eTag());
+                }
+            }
+            checkpoint.setParts(uploaded);
+            return true;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                logger.info("Multipart upload {} of '{}' no longer exists, restarting", checkpoint.getUploadId(), checkpoint.getKey());
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private static void abortQuietly(S3Client s3Client, TransferCheckpoint checkpoint) {
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(checkpoint.getBucket())
+                    .key(checkpoint.getKey())
+                    .uploadId(checkpoint.getUploadId())
+                    .build());
+        } catch (RuntimeException e) {
+            // 中止失败不影响后续流程，未完成的分段会由存储桶生命周期规则清理
+        }
+    }
+
+    private void acquire(String id) {
+        if (!active.add(id)) {
+            throw new IllegalStateException("Transfer '" + id + "' is already in progress");
+        }
+    }
+
+    private static byte[] readFully(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Source file ended before offset " + (offset + length));
+            }
+        }
+        return buffer.array();
+    }
+
+    private static void failFast(List<Future<?>> tasks) throws ExecutionException, InterruptedException {
+        for (Future<?> task : tasks) {
+            if (task.isDone()) {
+                task.get();
+            }
+        }
+    }
+
+    private static IOException unwrap(ExecutionException e, String message) {
+        if (e.getCause() instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (e.getCause() instanceof IOException ioException) {
+            return ioException;
+        }
+        return new IOException(message + ": " + e.getCause().getMessage(), e.getCause());
+    }
+
+    private Path journalFile(String checkpointId) {
+        return checkpointDir.resolve(checkpointId + ".json");
+    }
+
+    static Path partialFile(Path destination) {
+        return destination.resolveSibling(destination.getFileName() + ".part");
+    }
+
+    static String checkpointId(String type, String profile, String bucketName, String key, Path localPath) {
+        try {
+            String identity = profile + "\n" + bucketName + "\n" + key + "\n" + localPath;
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(identity.getBytes(StandardCharsets.UTF_8));
+            return type + "-" + HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.lskun.mcp.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key into one execution.
+ * <p>
+ * The first caller for a key becomes the leader and runs the loader; callers arriving while it
+ * is in flight wait for and share the leader's result (or exception). Once the leader finishes
+ * the key is released, so later calls execute again - nothing is cached. A leader may also release
+ * the key early, e.g. once it knows whether anyone joined, through {@link #executeClosing}.
+ *
+ * @param <K> key identifying identical requests
+ * @param <V> shared result
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+    private final ObjIntConsumer<V> participantsListener;
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    SingleFlight() {
+        this(null);
+    }
+
+    /**
+     * @param participantsListener told the final number of callers sharing a result before any of
+     *                             them receives it, e.g. to reference count a shared resource
+     */
+    SingleFlight(ObjIntConsumer<V> participantsListener) {
+        this.participantsListener = participantsListener;
+    }
+
+    private static final class Flight<V> {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final AtomicInteger participants = new AtomicInteger(1);
+    }
+
+    V execute(K key, Supplier<V> loader) {
+        return executeClosing(key, close -> loader.get());
+    }
+
+    /**
+     * Like {@link #execute(Object, Supplier)}, but the loader receives a function that stops new callers
+     * from joining this execution and returns the final number of participants, leader included.
+     * Callers arriving after it was called start a new execution.
+     */
+    V executeClosing(K key, Function<IntSupplier, V> loader) {
+        Flight<V> created = new Flight<>();
+        Flight<V> flight = inFlight.compute(key, (k, existing) -> {
+            if (existing == null) {
+                return created;
+            }
+            existing.participants.incrementAndGet();
+            return existing;
+        });
+
+        if (flight != created) {
+            coalesced.increment();
+            return await(flight.future);
+        }
+
+        executions.increment();
+        // 移除后不会再有新的参与者加入，参与者数量至此确定
+        IntSupplier close = () -> {
+            inFlight.remove(key, flight);
+            return flight.participants.get();
+        };
+        V value;
+        try {
+            value = loader.apply(close);
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, flight);
+            flight.future.completeExceptionally(e);
+            throw e;
+        }
+        int participants = close.getAsInt();
+        if (participantsListener != null) {
+            participantsListener.accept(value, participants);
+        }
+        flight.future.complete(value);
+        return value;
+    }
+
+    private static <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    long executions() {
+        return executions.sum();
+    }
+
+    long coalesced() {
+        return coalesced.sum();
+    }
+}
@@ -0,0 +1,352 @@
+package com.lskun.mcp.service;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal streaming reader and writer for POSIX ustar archives, covering what the archive tools
+ * need: regular files with long names (ustar prefix or GNU long-name entries) and sizes beyond
+ * 8 GiB (base-256 size field). PAX {@code path} and {@code size} records are honoured on read.
+ */
+final class TarArchive {
+
+    static final int BLOCK_SIZE = 512;
+
+    private static final byte TYPE_FILE = '0';
+    private static final byte TYPE_DIRECTORY = '5';
+    private static final byte TYPE_GNU_LONG_NAME = 'L';
+    private static final byte TYPE_PAX_HEADER = 'x';
+    private static final byte TYPE_PAX_GLOBAL_HEADER = 'g';
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+
+    private TarArchive() {
+    }
+
+    /**
+     * Writes entries sequentially; callers write exactly {@code size} bytes after each {@link #putEntry}.
+     */
+    static final class Writer implements Closeable {
+
+        private final OutputStream out;
+        private long remaining;
+        private long entrySize;
+
+        Writer(OutputStream out) {
+            this.out = out;
+        }
+
+        void putEntry(String name, long size, long modifiedMillis) throws IOException {
+            closeEntry();
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            byte[] header = new byte[BLOCK_SIZE];
+            if (nameBytes.length <= 100) {
+                System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+            } else if (!splitUstarName(nameBytes, header)) {
+                // GNU长文件名：先写入一个存放完整名称的条目
+                byte[] longName = Arrays.copyOf(nameBytes, nameBytes.length + 1);
+                writeHeader(newHeader("././@LongLink", longName.length, 0, TYPE_GNU_LONG_NAME));
+                out.write(longName);
+                pad(longName.length);
+                System.arraycopy(nameBytes, 0, header, 0, 100);
+            }
+            fillHeader(header, size, modifiedMillis, TYPE_FILE);
+            writeHeader(header);
+            remaining = size;
+            entrySize = size;
+        }
+
+        void write(byte[] buffer, int offset, int length) throws IOException {
+            if (length > remaining) {
+                throw new IOException("Entry data exceeds declared size of " + entrySize + " bytes");
+            }
+            out.write(buffer, offset, length);
+            remaining -= length;
+        }
+
+        private void closeEntry() throws IOException {
+            if (remaining != 0) {
+                throw new IOException("Entry data is " + remaining + " bytes shorter than declared size of " + entrySize);
+            }
+            pad(entrySize);
+            entrySize = 0;
+        }
+
+        private void pad(long size) throws IOException {
+            int padding = (int) ((BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE);
+            if (padding > 0) {
+                out.write(new byte[padding]);
+            }
+        }
+
+        private void writeHeader(byte[] header) throws IOException {
+            int checksum = 0;
+            for (byte b : header) {
+                checksum += b & 0xff;
+            }
+            writeOctal(header, 148, 7, checksum);
+            header[155] = ' ';
+            out.write(header);
+        }
+
+        private static byte[] newHeader(String name, long size, long modifiedMillis, byte type) {
+            byte[] header = new byte[BLOCK_SIZE];
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(nameBytes, 0, header, 0, Math.min(100, nameBytes.length));
+            fillHeader(header, size, modifiedMillis, type);
+            return header;
+        }
+
+        private static void fillHeader(byte[] header, long size, long modifiedMillis, byte type) {
+            writeOctal(header, 100, 8, 0644);
+            writeOctal(header, 108, 8, 0);
+            writeOctal(header, 116, 8, 0);
+            if (size <= MAX_OCTAL_SIZE) {
+                writeOctal(header, 124, 12, size);
+            } else {
+                // base-256编码，支持超过8GiB的条目
+                header[124] = (byte) 0x80;
+                for (int i = 135; i > 124; i--) {
+                    header[i] = (byte) size;
+                    size >>>= 8;
+                }
+            }
+            writeOctal(header, 136, 12, Math.max(0, modifiedMillis / 1000));
+            Arrays.fill(header, 148, 156, (byte) ' ');
+            header[156] = type;
+            System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+        }
+
+        /**
+         * Splits a long name into the ustar prefix (155 bytes) and name (100 bytes) fields at a '/'.
+         */
+        private static boolean splitUstarName(byte[] nameBytes, byte[] header) {
+            for (int i = nameBytes.length - 1; i > 0; i--) {
+                if (nameBytes[i] == '/' && i <= 155 && nameBytes.length - i - 1 <= 100 && nameBytes.length - i - 1 > 0) {
+                    System.arraycopy(nameBytes, i + 1, header, 0, nameBytes.length - i - 1);
+                    System.arraycopy(nameBytes, 0, header, 345, i);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static void writeOctal(byte[] header, int offset, int length, long value) {
+            String octal = Long.toOctalString(value);
+            int digits = length - 1;
+            for (int i = 0; i < digits; i++) {
+                int index = octal.length() - digits + i;
+                header[offset + i] = (byte) (index >= 0 ? octal.charAt(index) : '0');
+            }
+            header[offset + digits] = 0;
+        }
+
+        /**
+         * Finishes the archive with two zero blocks and closes the underlying stream.
+         */
+        @Override
+        public void close() throws IOException {
+            closeEntry();
+            out.write(new byte[BLOCK_SIZE * 2]);
+            out.close();
+        }
+    }
+
+    /**
+     * A regular file entry of an archive being read.
+     */
+    record Entry(String name, long size, long modifiedMillis) {
+    }
+
+    /**
+     * Reads regular file entries sequentially, skipping directories, links and other special entries.
+     */
+    static final class Reader implements Closeable {
+
+        private final InputStream in;
+        private final byte[] block = new byte[BLOCK_SIZE];
+        private long remaining;
+        private long padding;
+
+        Reader(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * Advances to the next regular file, or returns {@code null} at the end of the archive.
+         */
+        Entry next() throws IOException {
+            skipFully(remaining + padding);
+            remaining = 0;
+            padding = 0;
+
+            String longName = null;
+            Long paxSize = null;
+            while (true) {
+                if (!readBlock()) {
+                    return null;
+                }
+                if (isZeroBlock()) {
+                    return null;
+                }
+                long size = parseSize();
+                byte type = block[156];
+                String name = parseName();
+                long modifiedMillis = parseOctal(136, 12) * 1000;
+
+                if (type == TYPE_GNU_LONG_NAME) {
+                    longName = trimNul(new String(readData(size), StandardCharsets.UTF_8));
+                    continue;
+                }
+                if (type == TYPE_PAX_HEADER) {
+                    String pax = new String(readData(size), StandardCharsets.UTF_8);
+                    for (String record : pax.split("\n")) {
+                        int space = record.indexOf(' ');
+                        int equals = record.indexOf('=');
+                        if (space < 0 || equals < space) {
+                            continue;
+                        }
+                        String keyword = record.substring(space + 1, equals);
+                        String value = record.substring(equals + 1);
+                        if ("path".equals(keyword)) {
+                            longName = value;
+                        } else if ("size".equals(keyword)) {
+                            paxSize = Long.parseLong(value);
+                        }
+                    }
+                    continue;
+                }
+                if (paxSize != null) {
+                    size = paxSize;
+                }
+                long dataPadding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+                if (type == TYPE_PAX_GLOBAL_HEADER || type == TYPE_DIRECTORY || (type != TYPE_FILE && type != 0)) {
+                    skipFully(size + dataPadding);
+                    longName = null;
+                    paxSize = null;
+                    continue;
+                }
+                remaining = size;
+                padding = dataPadding;
+                return new Entry(longName != null ? longName : name, size, modifiedMillis);
+            }
+        }
+
+        /**
+         * Reads from the current entry; returns -1 at its end.
+         */
+        int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read < 0) {
+                throw new EOFException("Unexpected end of tar archive");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        private byte[] readData(long size) throws IOException {
+            if (size > Integer.MAX_VALUE - BLOCK_SIZE) {
+                throw new IOException("Tar metadata entry too large: " + size);
+            }
+            byte[] data = in.readNBytes((int) size);
+            if (data.length != size) {
+                throw new EOFException("Unexpected end of tar archive");
+            }
+            skipFully((BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE);
+            return data;
+        }
+
+        private boolean readBlock() throws IOException {
+            int read = in.readNBytes(block, 0, BLOCK_SIZE);
+            if (read == 0) {
+                return false;
+            }
+            if (read != BLOCK_SIZE) {
+                throw new EOFException("Truncated tar header");
+            }
+            return true;
+        }
+
+        private boolean isZeroBlock() {
+            for (byte b : block) {
+                if (b != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String parseName() {
+            String name = field(0, 100);
+            boolean ustar = block[257] == 'u' && block[258] == 's' && block[259] == 't'
+                    && block[260] == 'a' && block[261] == 'r';
+            if (ustar && block[345] != 0) {
+                name = field(345, 155) + "/" + name;
+            }
+            return name;
+        }
+
+        private long parseSize() {
+            if ((block[124] & 0x80) != 0) {
+                long size = 0;
+                for (int i = 125; i < 136; i++) {
+                    size = (size << 8) | (block[i] & 0xff);
+                }
+                return size;
+            }
+            return parseOctal(124, 12);
+        }
+
+        private long parseOctal(int offset, int length) {
+            long value = 0;
+            for (int i = offset; i < offset + length; i++) {
+                byte b = block[i];
+                if (b >= '0' && b <= '7') {
+                    value = (value << 3) + (b - '0');
+                } else if (b == 0 || (b == ' ' && value > 0)) {
+                    break;
+                }
+            }
+            return value;
+        }
+
+        private String field(int offset, int length) {
+            int end = offset;
+            while (end < offset + length && block[end] != 0) {
+                end++;
+            }
+            return new String(block, offset, end - offset, StandardCharsets.UTF_8);
+        }
+
+        private static String trimNul(String value) {
+            int nul = value.indexOf('\0');
+            return nul >= 0 ? value.substring(0, nul) : value;
+        }
+
+        private void skipFully(long bytes) throws IOException {
+            long left = bytes;
+            while (left > 0) {
+                long skipped = in.skip(left);
+                if (skipped <= 0) {
+                    if (in.read() < 0) {
+                        throw new EOFException("Unexpected end of tar archive");
+                    }
+                    skipped = 1;
+                }
+                left -= skipped;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
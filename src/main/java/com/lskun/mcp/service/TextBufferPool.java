@@ -0,0 +1,119 @@
+package com.lskun.mcp.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Decodes text object bodies through a small pool of reusable fixed-size buffers.
+ * <p>
+ * At most {@code r2.text.max-bytes} are read per call, so a large object never has to fit on the heap;
+ * the caller reports a continuation offset for the rest. Up to {@code r2.text.buffer-pool-size} byte/char
+ * buffer pairs are kept for reuse; concurrent reads beyond that allocate temporary buffers.
+ */
+@Component
+public class TextBufferPool {
+
+    private final int maxBytes;
+    private final ArrayBlockingQueue<Buffers> idle;
+
+    public TextBufferPool(
+            @Value("${r2.text.max-bytes:1048576}") int maxBytes,
+            @Value("${r2.text.buffer-pool-size:4}") int poolSize) {
+        this.maxBytes = Math.max(1024, maxBytes);
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+    }
+
+    private record Buffers(byte[] bytes, char[] chars) {
+    }
+
+    /**
+     * Decoded text and the number of bytes it was decoded from. Bytes of a character cut off at the
+     * end of a partial read are not consumed, so the next read starts on a character boundary.
+     */
+    record TextChunk(String text, int bytesConsumed) {
+    }
+
+    int maxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Reads up to {@link #maxBytes()} bytes from {@code in} and decodes them with {@code charset}.
+     *
+     * @param endOfInput whether the stream ends the object, so a trailing incomplete character is
+     *                   replaced instead of left for the next read
+     */
+    TextChunk read(InputStream in, Charset charset, boolean endOfInput) throws IOException {
+        Buffers buffers = idle.poll();
+        if (buffers == null) {
+            buffers = new Buffers(new byte[maxBytes], new char[maxBytes]);
+        }
+        try {
+            int length = in.readNBytes(buffers.bytes(), 0, maxBytes);
+            CharsetDecoder decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            ByteBuffer source = ByteBuffer.wrap(buffers.bytes(), 0, length);
+            CharBuffer target = CharBuffer.wrap(buffers.chars());
+            CoderResult result = decoder.decode(source, target, endOfInput);
+            if (result.isOverflow()) {
+                // 少数字符集每字节可解码出多个字符，超出池化缓冲区时改用一次性分配
+                source.rewind();
+                decoder.reset();
+                target = CharBuffer.allocate((int) Math.ceil(length * (double) decoder.maxCharsPerByte()));
+                result = decoder.decode(source, target, endOfInput);
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (endOfInput) {
+                decoder.flush(target);
+            }
+            target.flip();
+            return new TextChunk(target.toString(), source.position());
+        } catch (CharacterCodingException e) {
+            throw new IOException("Failed to decode text as " + charset.name() + ": " + e.getMessage(), e);
+        } finally {
+            idle.offer(buffers);
+        }
+    }
+
+    /**
+     * Returns the charset declared by a Content-Type header, or UTF-8 if none or an unknown one is declared.
+     */
+    static Charset charsetOf(String contentType) {
+        if (contentType == null) {
+            return StandardCharsets.UTF_8;
+        }
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                String name = trimmed.substring("charset=".length()).trim();
+                if (name.length() >= 2 && name.startsWith("\"") && name.endsWith("\"")) {
+                    name = name.substring(1, name.length() - 1);
+                }
+                try {
+                    return Charset.forName(name);
+                } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                    return StandardCharsets.UTF_8;
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+}
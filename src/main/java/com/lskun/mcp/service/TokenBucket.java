@@ -0,0 +1,105 @@
+package com.lskun.mcp.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Byte-rate limiter with a burst of one second of traffic and strict priority for interactive callers.
+ * <p>
+ * A bulk caller only takes tokens while no interactive caller is waiting on the same bucket, so small
+ * requests are served as soon as tokens accumulate instead of queueing behind large transfers. The
+ * rate can be changed at any time; a rate of 0 disables the limit and releases all waiters.
+ */
+final class TokenBucket {
+
+    enum Priority {
+        INTERACTIVE, BULK
+    }
+
+    /** Smallest burst, so a low rate still admits a full read buffer at once. */
+    static final long MIN_BURST_BYTES = 64 * 1024;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private long bytesPerSecond;
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+    private int interactiveWaiting;
+
+    TokenBucket(long bytesPerSecond) {
+        this.bytesPerSecond = Math.max(0, bytesPerSecond);
+        this.tokens = capacity();
+    }
+
+    long bytesPerSecond() {
+        lock.lock();
+        try {
+            return bytesPerSecond;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void setBytesPerSecond(long bytesPerSecond) {
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            this.bytesPerSecond = Math.max(0, bytesPerSecond);
+            tokens = Math.min(tokens, capacity());
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes {@code bytes} tokens, waiting until they are available; returns the time spent waiting in nanoseconds.
+     * Requests larger than the burst are admitted once the bucket is full and leave it in debt.
+     */
+    long acquire(long bytes, Priority priority) throws InterruptedException {
+        long start = System.nanoTime();
+        boolean interactive = priority == Priority.INTERACTIVE;
+        lock.lockInterruptibly();
+        if (interactive) {
+            interactiveWaiting++;
+        }
+        try {
+            while (true) {
+                if (bytesPerSecond <= 0) {
+                    return System.nanoTime() - start;
+                }
+                long now = System.nanoTime();
+                refill(now);
+                double needed = Math.min(bytes, capacity());
+                boolean mayTake = interactive || interactiveWaiting == 0;
+                if (mayTake && tokens >= needed) {
+                    tokens -= bytes;
+                    return now - start;
+                }
+                // 令牌不足时按缺口等待；被高优先级请求阻塞的批量请求等待其完成后的通知
+                long waitNanos = mayTake
+                        ? (long) Math.ceil((needed - tokens) * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond)
+                        : TimeUnit.MILLISECONDS.toNanos(100);
+                changed.awaitNanos(Math.max(waitNanos, TimeUnit.MICROSECONDS.toNanos(100)));
+            }
+        } finally {
+            if (interactive) {
+                interactiveWaiting--;
+                changed.signalAll();
+            }
+            lock.unlock();
+        }
+    }
+
+    private double capacity() {
+        return Math.max(bytesPerSecond, MIN_BURST_BYTES);
+    }
+
+    private void refill(long now) {
+        if (bytesPerSecond > 0) {
+            tokens = Math.min(capacity(), tokens + (now - refilledAt) * (double) bytesPerSecond / TimeUnit.SECONDS.toNanos(1));
+        }
+        refilledAt = now;
+    }
+}
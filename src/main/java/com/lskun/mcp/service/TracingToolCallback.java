@@ -0,0 +1,57 @@
+package com.lskun.mcp.service;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+/**
+ * Records every invocation of the wrapped tool as a {@link R2FlightEvents.ToolCallEvent}, so the SDK and
+ * HTTP events of a slow call can be attributed to the tool call that issued them.
+ */
+public class TracingToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+
+    public TracingToolCallback(ToolCallback delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        R2FlightEvents.ToolCallEvent event = new R2FlightEvents.ToolCallEvent();
+        if (!event.isEnabled()) {
+            return invoke(toolInput, toolContext);
+        }
+        event.begin();
+        event.tool = getToolDefinition().name();
+        event.argumentsLength = toolInput == null ? 0 : toolInput.length();
+        try {
+            String result = invoke(toolInput, toolContext);
+            event.resultLength = result == null ? 0 : result.length();
+            event.success = true;
+            return result;
+        } finally {
+            event.commit();
+        }
+    }
+
+    private String invoke(String toolInput, ToolContext toolContext) {
+        return toolContext == null ? delegate.call(toolInput) : delegate.call(toolInput, toolContext);
+    }
+}
@@ -0,0 +1,298 @@
+package com.lskun.mcp.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * On-disk journal of a resumable transfer, rewritten after every completed part or range.
+ * <p>
+ * Uploads record the multipart upload id and the ETag of each completed part; downloads record
+ * the object ETag and the byte ranges already written to the local {@code .part} file.
+ * {@link #read(Path)} returns {@code null} for a missing, unreadable or incompatible file so the
+ * transfer simply starts over.
+ */
+public class TransferCheckpoint {
+
+    static final int FORMAT_VERSION = 1;
+    static final String UPLOAD = "upload";
+    static final String DOWNLOAD = "download";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private int version = FORMAT_VERSION;
+    private String id;
+    private String type;
+    private String profile;
+    private String bucket;
+    private String key;
+    private String localPath;
+    private long totalBytes;
+    private long partSize;
+    private String updatedAt;
+    /** Upload only: content type to use when completing the upload and last-modified time of the source file. */
+    private String contentType;
+    private long sourceModifiedMillis;
+    private String uploadId;
+    /** Upload only: part number to ETag of every part R2 has accepted. */
+    private TreeMap<Integer, String> parts = new TreeMap<>();
+    /** Download only: ETag the ranges were read from; ranged GETs are sent with If-Match on it. */
+    private String eTag;
+    /** Download only: sorted, non-overlapping [start, end) byte ranges already on disk. */
+    private List<long[]> completedRanges = new ArrayList<>();
+
+    public TransferCheckpoint() {
+    }
+
+    TransferCheckpoint(String id, String type, String profile, String bucket, String key, String localPath,
+                       long totalBytes, long partSize) {
+        this.id = id;
+        this.type = type;
+        this.profile = profile;
+        this.bucket = bucket;
+        this.key = key;
+        this.localPath = localPath;
+        this.totalBytes = totalBytes;
+        this.partSize = partSize;
+    }
+
+    static TransferCheckpoint read(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            TransferCheckpoint checkpoint = MAPPER.readValue(in, TransferCheckpoint.class);
+            return checkpoint.version == FORMAT_VERSION ? checkpoint : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the checkpoint atomically: a temp file in the same directory is renamed over the target.
+     */
+    synchronized void write(Path file) throws IOException {
+        updatedAt = Instant.now().toString();
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                MAPPER.writeValue(out, this);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Records {@code [start, end)} as written, merging it with adjacent or overlapping ranges.
+     */
+    synchronized void addRange(long start, long end) {
+        List<long[]> merged = new ArrayList<>(completedRanges.size() + 1);
+        long[] added = {start, end};
+        boolean inserted = false;
+        for (long[] range : completedRanges) {
+            if (range[1] < added[0]) {
+                merged.add(range);
+            } else if (range[0] > added[1]) {
+                if (!inserted) {
+                    merged.add(added);
+                    inserted = true;
+                }
+                merged.add(range);
+            } else {
+                added[0] = Math.min(added[0], range[0]);
+                added[1] = Math.max(added[1], range[1]);
+            }
+        }
+        if (!inserted) {
+            merged.add(added);
+        }
+        completedRanges = merged;
+    }
+
+    /**
+     * Returns the [start, end) ranges not yet written, each at most {@code chunkSize} bytes long.
+     */
+    synchronized List<long[]> missingRanges(long chunkSize) {
+        List<long[]> missing = new ArrayList<>();
+        long position = 0;
+        for (long[] range : completedRanges) {
+            addChunks(missing, position, range[0], chunkSize);
+            position = Math.max(position, range[1]);
+        }
+        addChunks(missing, position, totalBytes, chunkSize);
+        return missing;
+    }
+
+    private static void addChunks(List<long[]> chunks, long start, long end, long chunkSize) {
+        for (long position = start; position < end; position += chunkSize) {
+            chunks.add(new long[]{position, Math.min(end, position + chunkSize)});
+        }
+    }
+
+    synchronized void putPart(int partNumber, String partETag) {
+        parts.put(partNumber, partETag);
+    }
+
+    /**
+     * Bytes already transferred: completed ranges for downloads, completed parts for uploads.
+     */
+    @JsonIgnore
+    synchronized long getCompletedBytes() {
+        if (DOWNLOAD.equals(type)) {
+            long completed = 0;
+            for (long[] range : completedRanges) {
+                completed += range[1] - range[0];
+            }
+            return completed;
+        }
+        long completed = 0;
+        for (Integer partNumber : parts.keySet()) {
+            long start = (partNumber - 1) * partSize;
+            completed += Math.max(0, Math.min(partSize, totalBytes - start));
+        }
+        return completed;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public void setProfile(String profile) {
+        this.profile = profile;
+    }
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(String bucket) {
+        this.bucket = bucket;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getLocalPath() {
+        return localPath;
+    }
+
+    public void setLocalPath(String localPath) {
+        this.localPath = localPath;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    public long getPartSize() {
+        return partSize;
+    }
+
+    public void setPartSize(long partSize) {
+        this.partSize = partSize;
+    }
+
+    public String getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(String updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public long getSourceModifiedMillis() {
+        return sourceModifiedMillis;
+    }
+
+    public void setSourceModifiedMillis(long sourceModifiedMillis) {
+        this.sourceModifiedMillis = sourceModifiedMillis;
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public synchronized TreeMap<Integer, String> getParts() {
+        return new TreeMap<>(parts);
+    }
+
+    public synchronized void setParts(TreeMap<Integer, String> parts) {
+        this.parts = parts;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public void setETag(String eTag) {
+        this.eTag = eTag;
+    }
+
+    public synchronized List<long[]> getCompletedRanges() {
+        return new ArrayList<>(completedRanges);
+    }
+
+    public synchronized void setCompletedRanges(List<long[]> completedRanges) {
+        this.completedRanges = completedRanges;
+    }
+}
@@ -0,0 +1,231 @@
+package com.lskun.mcp.service;
+
+import java.io.InterruptedIOException;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mutable state of one background transfer: lifecycle, byte progress and outcome.
+ * <p>
+ * Worker threads update progress through {@link #addBytes(long)}; tool calls read a consistent
+ * {@link R2TransferJobService.JobStatus} snapshot through {@link #status()}. State transitions are
+ * synchronized so a job cancelled while queued never starts, and a finished job cannot be cancelled.
+ */
+final class TransferJob implements ResumableTransfers.Progress {
+
+    enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+
+        boolean isFinished() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    enum Type {
+        UPLOAD, DOWNLOAD
+    }
+
+    private final String id;
+    private final Type type;
+    private final String profile;
+    private final String bucket;
+    private final String key;
+    private final String localPath;
+    private final Instant submittedAt = Instant.now();
+    private final AtomicLong bytesTransferred = new AtomicLong();
+
+    private volatile State state = State.QUEUED;
+    private volatile long totalBytes = -1;
+    /** Bytes completed by an earlier attempt of a resumed transfer; excluded from the rate. */
+    private volatile long resumedBytes;
+    private volatile Instant startedAt;
+    private volatile long startedNanos;
+    private volatile Instant finishedAt;
+    private volatile long finishedNanos;
+    private volatile String eTag;
+    private volatile String error;
+    private volatile Future<?> future;
+
+    TransferJob(String id, Type type, String profile, String bucket, String key, String localPath) {
+        this.id = id;
+        this.type = type;
+        this.profile = profile;
+        this.bucket = bucket;
+        this.key = key;
+        this.localPath = localPath;
+    }
+
+    String id() {
+        return id;
+    }
+
+    Type type() {
+        return type;
+    }
+
+    String profile() {
+        return profile;
+    }
+
+    String bucket() {
+        return bucket;
+    }
+
+    String key() {
+        return key;
+    }
+
+    String localPath() {
+        return localPath;
+    }
+
+    State state() {
+        return state;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    void addBytes(long bytes) {
+        bytesTransferred.addAndGet(bytes);
+    }
+
+    /**
+     * Restarts the progress count, e.g. when the SDK retries a request body from the beginning.
+     */
+    void resetBytes() {
+        bytesTransferred.set(0);
+    }
+
+    @Override
+    public void onStart(long totalBytes, long completedBytes) {
+        this.totalBytes = totalBytes;
+        this.resumedBytes = completedBytes;
+        bytesTransferred.set(completedBytes);
+    }
+
+    @Override
+    public void onTransferred(long bytes) {
+        addBytes(bytes);
+    }
+
+    /**
+     * Moves a queued job to RUNNING; returns {@code false} if it was cancelled before it started.
+     */
+    synchronized boolean start() {
+        if (state != State.QUEUED) {
+            return false;
+        }
+        state = State.RUNNING;
+        startedAt = Instant.now();
+        startedNanos = System.nanoTime();
+        return true;
+    }
+
+    synchronized void succeed(String eTag) {
+        if (state == State.RUNNING) {
+            this.eTag = eTag;
+            finish(State.SUCCEEDED);
+        }
+    }
+
+    synchronized void fail(String error) {
+        if (state == State.RUNNING) {
+            this.error = error;
+            finish(State.FAILED);
+        }
+    }
+
+    /**
+     * Cancels a queued or running job; returns {@code false} if it had already finished.
+     * Running transfers notice the cancellation at their next read or write.
+     */
+    boolean cancel() {
+        Future<?> running;
+        synchronized (this) {
+            if (state.isFinished()) {
+                return false;
+            }
+            finish(State.CANCELLED);
+            running = future;
+        }
+        if (running != null) {
+            running.cancel(true);
+        }
+        return true;
+    }
+
+    boolean isCancelled() {
+        return state == State.CANCELLED;
+    }
+
+    /**
+     * Throws if the job has been cancelled; called by the copy loops between buffers.
+     */
+    @Override
+    public void checkCancelled() throws InterruptedIOException {
+        if (state == State.CANCELLED) {
+            throw new InterruptedIOException("Transfer job '" + id + "' was cancelled");
+        }
+    }
+
+    private void finish(State finalState) {
+        state = finalState;
+        finishedAt = Instant.now();
+        finishedNanos = System.nanoTime();
+    }
+
+    R2TransferJobService.JobStatus status() {
+        return status(System.nanoTime());
+    }
+
+    synchronized R2TransferJobService.JobStatus status(long nowNanos) {
+        long bytes = bytesTransferred.get();
+        long total = totalBytes;
+        Double percent = null;
+        if (total > 0) {
+            percent = Math.min(100.0, Math.round(bytes * 1000.0 / total) / 10.0);
+        } else if (total == 0 && state == State.SUCCEEDED) {
+            percent = 100.0;
+        }
+
+        // 速率按开始运行以来的平均值计算，ETA仅对运行中的任务给出
+        Long bytesPerSecond = null;
+        Long etaSeconds = null;
+        if (startedAt != null) {
+            long endNanos = state.isFinished() ? finishedNanos : nowNanos;
+            long elapsedNanos = endNanos - startedNanos;
+            if (elapsedNanos > 0) {
+                bytesPerSecond = (long) (Math.max(0, bytes - resumedBytes) * 1_000_000_000.0 / elapsedNanos);
+                if (state == State.RUNNING && total > 0 && bytesPerSecond > 0) {
+                    etaSeconds = (long) Math.ceil((double) Math.max(0, total - bytes) / bytesPerSecond);
+                }
+            }
+        }
+
+        return new R2TransferJobService.JobStatus(
+                id,
+                type.name().toLowerCase(Locale.ROOT),
+                state.name().toLowerCase(Locale.ROOT),
+                bucket,
+                key,
+                localPath,
+                bytes,
+                total >= 0 ? total : null,
+                percent,
+                bytesPerSecond,
+                etaSeconds,
+                submittedAt.toString(),
+                startedAt == null ? null : startedAt.toString(),
+                finishedAt == null ? null : finishedAt.toString(),
+                eTag,
+                error);
+    }
+}
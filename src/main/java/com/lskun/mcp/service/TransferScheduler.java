@@ -0,0 +1,267 @@
+package com.lskun.mcp.service;
+
+import com.lskun.mcp.config.BandwidthProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shapes the bandwidth of every R2 client by throttling request and response bodies in the SDK pipeline.
+ * <p>
+ * Registered as an {@link ExecutionInterceptor} on the clients of all profiles. Object bodies pass a
+ * per-bucket and a global {@link TokenBucket}; bodies up to {@code r2.bandwidth.interactive-max-bytes}
+ * are interactive and take tokens before any bulk transfer waiting on the same bucket. Metadata and
+ * listing calls carry no object body and are never throttled. Every object body is wrapped and the current
+ * limits are read for each chunk, so a limit set through {@code setBandwidthLimit} also applies to transfers
+ * already running, and waiting bodies are released immediately when a limit is raised or removed.
+ * <p>
+ * There is no fairness between transfers of the same priority: tokens go to whichever body reads next,
+ * so concurrent bulk transfers share a limit roughly in proportion to how fast they issue reads, and one
+ * transfer may take a larger share than another.
+ */
+@Component
+public class TransferScheduler implements ExecutionInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransferScheduler.class);
+
+    /** Largest read accounted at once, so throttled streams progress smoothly at low rates. */
+    private static final int THROTTLE_CHUNK_SIZE = 16 * 1024;
+
+    private final TokenBucket global;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final long interactiveMaxBytes;
+    private final Map<TokenBucket.Priority, WaitStats> waitStats = new EnumMap<>(TokenBucket.Priority.class);
+
+    public TransferScheduler(BandwidthProperties properties) {
+        this.global = new TokenBucket(properties.getGlobalBytesPerSecond());
+        properties.getBucketBytesPerSecond().forEach((bucket, limit) -> buckets.put(bucket, new TokenBucket(limit)));
+        this.interactiveMaxBytes = properties.getInteractiveMaxBytes();
+        for (TokenBucket.Priority priority : TokenBucket.Priority.values()) {
+            waitStats.put(priority, new WaitStats());
+        }
+    }
+
+    /**
+     * Queue wait statistics of one priority class.
+     */
+    public record QueueStats(long bytes, long throttledReads, long waitingNow, long totalWaitMillis,
+                             double averageWaitMillis, double maxWaitMillis) {
+    }
+
+    public record BandwidthStats(long globalBytesPerSecond, Map<String, Long> bucketBytesPerSecond,
+                                 long interactiveMaxBytes, Map<String, QueueStats> queues) {
+    }
+
+    @Tool(description = """
+    Show the bandwidth limits applied to R2 transfers and the time transfers spent waiting for bandwidth,
+    separately for interactive (small) and bulk (large) request and response bodies. Limits of 0 mean unlimited.
+    """)
+    public BandwidthStats getBandwidthStats() {
+        Map<String, Long> bucketLimits = new TreeMap<>();
+        buckets.forEach((bucket, limiter) -> {
+            long limit = limiter.bytesPerSecond();
+            if (limit > 0) {
+                bucketLimits.put(bucket, limit);
+            }
+        });
+        Map<String, QueueStats> queues = new LinkedHashMap<>();
+        waitStats.forEach((priority, stats) -> queues.put(priority.name().toLowerCase(Locale.ROOT), stats.snapshot()));
+        return new BandwidthStats(global.bytesPerSecond(), bucketLimits, interactiveMaxBytes, queues);
+    }
+
+    @Tool(description = """
+    Change a bandwidth limit at runtime. Applies to uploads and downloads of all profiles.
+    Parameters:
+    - bucketName (string, optional) - bucket to limit; omit to change the global limit shared by all buckets
+    - bytesPerSecond (integer) - new limit in bytes per second; 0 removes the limit
+    """)
+    public String setBandwidthLimit(@ToolParam(required = false) String bucketName, Long bytesPerSecond) {
+        if (bytesPerSecond == null || bytesPerSecond < 0) {
+            throw new IllegalArgumentException("Bytes per second must be 0 (unlimited) or positive");
+        }
+        if (bucketName == null || bucketName.trim().isEmpty()) {
+            global.setBytesPerSecond(bytesPerSecond);
+            logger.info("Global bandwidth limit set to {} bytes/s", bytesPerSecond);
+            return "Global bandwidth limit set to " + describe(bytesPerSecond) + ".";
+        }
+        String bucket = bucketName.trim();
+        buckets.computeIfAbsent(bucket, name -> new TokenBucket(0)).setBytesPerSecond(bytesPerSecond);
+        logger.info("Bandwidth limit of bucket {} set to {} bytes/s", bucket, bytesPerSecond);
+        return "Bandwidth limit of bucket '" + bucket + "' set to " + describe(bytesPerSecond) + ".";
+    }
+
+    @Override
+    public Optional<RequestBody> modifyHttpContent(Context.ModifyHttpRequest context,
+                                                   ExecutionAttributes executionAttributes) {
+        Optional<RequestBody> body = context.requestBody();
+        if (body.isEmpty() || body.get().optionalContentLength().isEmpty()) {
+            return body;
+        }
+        String bucket = bucketOf(context.request());
+        RequestBody original = body.get();
+        long length = original.optionalContentLength().get();
+        return Optional.of(RequestBody.fromContentProvider(
+                () -> throttle(original.contentStreamProvider().newStream(), bucket, length),
+                length, original.contentType()));
+    }
+
+    @Override
+    public Optional<InputStream> modifyHttpResponseContent(Context.ModifyHttpResponse context,
+                                                           ExecutionAttributes executionAttributes) {
+        Optional<InputStream> body = context.responseBody();
+        if (body.isEmpty() || !(context.request() instanceof GetObjectRequest)) {
+            return body;
+        }
+        long length = context.httpResponse().firstMatchingHeader("Content-Length")
+                .map(Long::parseLong)
+                .orElse(Long.MAX_VALUE);
+        return Optional.of(throttle(body.get(), bucketOf(context.request()), length));
+    }
+
+    /**
+     * Wraps an object body of {@code length} bytes in {@code bucket} so that it is throttled while a limit applies.
+     */
+    InputStream throttle(InputStream body, String bucket, long length) {
+        return new ThrottledInputStream(body, bucket, classify(length));
+    }
+
+    /**
+     * Waits for bandwidth for {@code bytes} of an object body in {@code bucket}.
+     */
+    void acquire(String bucket, long bytes, TokenBucket.Priority priority) throws InterruptedException {
+        WaitStats stats = waitStats.get(priority);
+        stats.waiting.incrementAndGet();
+        try {
+            long waitNanos = 0;
+            TokenBucket bucketLimiter = bucket == null ? null : buckets.get(bucket);
+            if (bucketLimiter != null) {
+                waitNanos += bucketLimiter.acquire(bytes, priority);
+            }
+            waitNanos += global.acquire(bytes, priority);
+            stats.record(bytes, waitNanos);
+        } finally {
+            stats.waiting.decrementAndGet();
+        }
+    }
+
+    TokenBucket.Priority classify(long length) {
+        return length <= interactiveMaxBytes ? TokenBucket.Priority.INTERACTIVE : TokenBucket.Priority.BULK;
+    }
+
+    private boolean isLimited(String bucket) {
+        if (global.bytesPerSecond() > 0) {
+            return true;
+        }
+        TokenBucket bucketLimiter = bucket == null ? null : buckets.get(bucket);
+        return bucketLimiter != null && bucketLimiter.bytesPerSecond() > 0;
+    }
+
+    private static String bucketOf(SdkRequest request) {
+        return request.getValueForField("Bucket", String.class).orElse(null);
+    }
+
+    private static String describe(long bytesPerSecond) {
+        return bytesPerSecond == 0 ? "unlimited" : bytesPerSecond + " bytes/s";
+    }
+
+    private static final class WaitStats {
+
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder throttledReads = new LongAdder();
+        private final LongAdder totalWaitNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private final AtomicInteger waiting = new AtomicInteger();
+
+        void record(long byteCount, long waitNanos) {
+            bytes.add(byteCount);
+            // 只统计真正等待过的读取，未受限的读取不计入平均等待时间
+            if (waitNanos > TimeUnit.MICROSECONDS.toNanos(100)) {
+                throttledReads.increment();
+                totalWaitNanos.add(waitNanos);
+                maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+            }
+        }
+
+        QueueStats snapshot() {
+            long throttled = throttledReads.sum();
+            long totalWait = totalWaitNanos.sum();
+            return new QueueStats(
+                    bytes.sum(),
+                    throttled,
+                    waiting.get(),
+                    TimeUnit.NANOSECONDS.toMillis(totalWait),
+                    throttled == 0 ? 0 : Math.round(totalWait / 1_000.0 / throttled) / 1_000.0,
+                    Math.round(maxWaitNanos.get() / 1_000.0) / 1_000.0);
+        }
+    }
+
+    /**
+     * Takes tokens for every chunk read from the wrapped body while the global or bucket limit is set.
+     */
+    private final class ThrottledInputStream extends FilterInputStream {
+
+        private final String bucket;
+        private final TokenBucket.Priority priority;
+
+        ThrottledInputStream(InputStream in, String bucket, TokenBucket.Priority priority) {
+            super(in);
+            this.bucket = bucket;
+            this.priority = priority;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1 && isLimited(bucket)) {
+                throttle(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            // 每次读取时检查当前限速，传输中途设置的限速对后续分块立即生效
+            if (!isLimited(bucket)) {
+                return super.read(buffer, offset, length);
+            }
+            int read = super.read(buffer, offset, Math.min(length, THROTTLE_CHUNK_SIZE));
+            if (read > 0) {
+                throttle(read);
+            }
+            return read;
+        }
+
+        private void throttle(int bytes) throws InterruptedIOException {
+            try {
+                acquire(bucket, bytes, priority);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+            }
+        }
+    }
+}
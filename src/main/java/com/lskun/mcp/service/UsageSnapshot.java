@@ -0,0 +1,103 @@
+package com.lskun.mcp.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persisted usage snapshot of one bucket/prefix root, holding the statistics of every
+ * immediate child prefix so later runs only re-list the children that are stale.
+ * <p>
+ * Stored as gzip compressed JSON; {@link #read(Path)} returns {@code null} for a missing,
+ * unreadable or incompatible file so callers simply fall back to a full listing.
+ */
+public class UsageSnapshot {
+
+    static final int FORMAT_VERSION = 1;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private int version = FORMAT_VERSION;
+    private String bucket;
+    private String prefix;
+    /** Child prefix (or {@link R2UsageService#DIRECT_OBJECTS} for objects directly under the root) to its stats. */
+    private TreeMap<String, PrefixUsageStats> prefixes = new TreeMap<>();
+
+    public UsageSnapshot() {
+    }
+
+    public UsageSnapshot(String bucket, String prefix) {
+        this.bucket = bucket;
+        this.prefix = prefix;
+    }
+
+    static UsageSnapshot read(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            UsageSnapshot snapshot = MAPPER.readValue(in, UsageSnapshot.class);
+            return snapshot.version == FORMAT_VERSION ? snapshot : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot atomically: a temp file in the same directory is renamed over the target.
+     */
+    void write(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                MAPPER.writeValue(out, this);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(String bucket) {
+        this.bucket = bucket;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public TreeMap<String, PrefixUsageStats> getPrefixes() {
+        return prefixes;
+    }
+
+    public void setPrefixes(TreeMap<String, PrefixUsageStats> prefixes) {
+        this.prefixes = prefixes;
+    }
+}
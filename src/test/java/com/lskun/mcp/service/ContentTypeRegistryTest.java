@@ -0,0 +1,155 @@
+package com.lskun.mcp.service;
+
+import com.lskun.mcp.config.ContentTypeProperties;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 内容类型注册表测试类（不需要访问R2）
+ */
+public class ContentTypeRegistryTest {
+
+    private final ContentTypeRegistry registry = new ContentTypeRegistry(new ContentTypeProperties());
+
+    /**
+     * 测试按扩展名查找，忽略大小写，目录中的点号和隐藏文件不视为扩展名
+     */
+    @Test
+    public void testFromName() {
+        assertEquals("text/plain", registry.fromName("notes.txt"));
+        assertEquals("image/jpeg", registry.fromName("photos/IMG_001.JPG"));
+        assertEquals("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", registry.fromName("a.b.xlsx"));
+        assertEquals(ContentTypeRegistry.DEFAULT_CONTENT_TYPE, registry.fromName("release.v2/README"));
+        assertEquals(ContentTypeRegistry.DEFAULT_CONTENT_TYPE, registry.fromName("home/.bashrc"));
+        assertEquals(ContentTypeRegistry.DEFAULT_CONTENT_TYPE, registry.fromName("file."));
+        assertEquals(ContentTypeRegistry.DEFAULT_CONTENT_TYPE, registry.fromName("data.unknownext"));
+    }
+
+    /**
+     * 测试判断文本类型，忽略大小写及charset等参数
+     */
+    @Test
+    public void testIsText() {
+        assertTrue(registry.isText("text/plain"));
+        assertTrue(registry.isText("Text/CSV; charset=ISO-8859-1"));
+        assertTrue(registry.isText("application/json;charset=utf-8"));
+        assertTrue(registry.isText("application/ld+json"));
+        assertTrue(registry.isText(" application/atom+xml "));
+        assertTrue(registry.isText("application/xhtml+xml"));
+        assertTrue(registry.isText("application/x-www-form-urlencoded"));
+        assertFalse(registry.isText("application/octet-stream"));
+        assertFalse(registry.isText("image/png"));
+        assertFalse(registry.isText("application/jsonx"));
+        assertFalse(registry.isText(null));
+    }
+
+    /**
+     * 测试没有在原有文本类型列表中的类型默认按二进制处理（下载时保存为文件），需要通过配置标记为文本
+     */
+    @Test
+    public void testTextTypesMatchLegacyList() {
+        for (String type : new String[]{"application/x-ndjson", "application/yaml", "application/x-yaml",
+                "application/toml", "application/sql", "application/x-sh"}) {
+            assertFalse(registry.isText(type), type);
+        }
+        assertEquals("application/x-sh", registry.fromName("deploy.sh"));
+        assertFalse(registry.isText(registry.fromName("deploy.sh")));
+
+        ContentTypeProperties properties = new ContentTypeProperties();
+        properties.getTextTypes().add("application/x-ndjson");
+        assertTrue(new ContentTypeRegistry(properties).isText("application/x-ndjson"));
+    }
+
+    /**
+     * 测试通过配置新增或覆盖扩展名映射及文本类型
+     */
+    @Test
+    public void testConfiguration() {
+        ContentTypeProperties properties = new ContentTypeProperties();
+        properties.getExtensions().put(".Parquet", "application/vnd.apache.parquet");
+        properties.getExtensions().put("log", "text/x-log");
+        properties.getTextTypes().add("application/X-Custom");
+        ContentTypeRegistry configured = new ContentTypeRegistry(properties);
+
+        assertEquals("application/vnd.apache.parquet", configured.fromName("part-0001.parquet"));
+        assertEquals("text/x-log", configured.fromName("app.LOG"));
+        assertTrue(configured.isText("application/x-custom; charset=utf-8"));
+        assertFalse(registry.isText("application/x-custom"));
+    }
+
+    /**
+     * 测试扩展名缺失或有歧义时按文件头识别类型
+     */
+    @Test
+    public void testSniffing() {
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0x0D};
+        assertEquals("image/png", registry.detect("uploads/avatar", png, png.length));
+        assertEquals("image/png", registry.detect("uploads/avatar.png", png, png.length));
+
+        byte[] pdf = "%PDF-1.7\n%âãÏÓ".getBytes(StandardCharsets.ISO_8859_1);
+        assertEquals("application/pdf", registry.detect("invoice", pdf, pdf.length));
+
+        assertEquals("application/json", detect("state/status", "\n  {\"ok\": true}"));
+        assertEquals("text/html", detect("index", "<!DOCTYPE html><html></html>"));
+        assertEquals("image/svg+xml", detect("logo", "<?xml version=\"1.0\"?>\n<svg xmlns=\"http://www.w3.org/2000/svg\"/>"));
+        assertEquals("text/plain", detect("LICENSE", "中文说明 plain text"));
+
+        // 有歧义的扩展名：二进制签名优先，纯文本时沿用扩展名映射
+        byte[] transportStream = new byte[376];
+        transportStream[0] = 0x47;
+        transportStream[188] = 0x47;
+        assertEquals("video/mp2t", registry.detect("clip.ts", transportStream, transportStream.length));
+        assertEquals("application/typescript", detect("app.ts", "export const x = 1;"));
+        assertEquals(ContentTypeRegistry.DEFAULT_CONTENT_TYPE, registry.detect("blob.bin", new byte[]{0, 1, 2, 3, 4}, 5));
+        assertEquals("application/gzip", registry.detect("blob.bin", new byte[]{0x1F, (byte) 0x8B, 8}, 3));
+
+        // 已知且无歧义的扩展名不读取内容
+        assertFalse(registry.needsSniffing("notes.txt"));
+        assertEquals("text/plain", registry.detect("notes.txt", png, png.length));
+        assertEquals(ContentTypeRegistry.DEFAULT_CONTENT_TYPE, registry.detect("noext", null, 0));
+    }
+
+    /**
+     * 测试查找过程不分配内存（旧实现每次调用都会重建HashMap）
+     */
+    @Test
+    public void testLookupsDoNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        String[] keys = {"reports/2024/summary.PDF", "a/b/c.json", "image.webp", "no-extension", "x.unknown"};
+        String[] types = {"text/plain; charset=utf-8", "application/vnd.api+json", "image/png"};
+        int matches = 0;
+        for (int i = 0; i < 10_000; i++) {
+            matches += registry.fromName(keys[i % keys.length]).length() + (registry.isText(types[i % types.length]) ? 1 : 0);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            matches += registry.fromName(keys[i % keys.length]).length() + (registry.isText(types[i % types.length]) ? 1 : 0);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertTrue(matches > 0);
+        assertTrue(allocated < 64 * 1024, "十万次查找不应分配内存，实际分配: " + allocated + " bytes");
+    }
+
+    /**
+     * 测试只检查前SNIFF_LENGTH个字节，调用方传入更大的缓冲区时不会扫描后面的内容
+     */
+    @Test
+    public void testSniffingExaminesOnlyHead() {
+        byte[] buffer = new byte[64 * 1024];
+        Arrays.fill(buffer, 0, ContentTypeRegistry.SNIFF_LENGTH, (byte) 'a');
+        // SNIFF_LENGTH之后的控制字符不影响结果
+        assertEquals("text/plain", registry.detect("notes", buffer, buffer.length));
+    }
+
+    private String detect(String key, String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return registry.detect(key, bytes, bytes.length);
+    }
+}
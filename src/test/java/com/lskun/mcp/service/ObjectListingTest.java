@@ -0,0 +1,59 @@
+package com.lskun.mcp.service;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ObjectListing编码与字段投影测试类（不需要访问R2）
+ */
+public class ObjectListingTest {
+
+    private final List<S3Object> objects = List.of(
+            S3Object.builder().key("a.txt").size(12L).lastModified(Instant.parse("2025-01-01T00:00:00Z")).build(),
+            S3Object.builder().key("dir/\"quoted\".bin").size(34L).lastModified(Instant.parse("2025-02-01T00:00:00Z")).build());
+
+    /**
+     * 测试字段投影只保留指定字段
+     */
+    @Test
+    public void testProjection() {
+        ObjectListing.Projection keyOnly = ObjectListing.Projection.parse("key");
+        List<ObjectListing.Entry> entries = ObjectListing.toEntries(objects, keyOnly);
+        assertEquals("a.txt", entries.get(0).key());
+        assertNull(entries.get(0).size());
+        assertNull(entries.get(0).lastModified());
+
+        ObjectListing.Projection keyAndSize = ObjectListing.Projection.parse("key,size");
+        assertEquals(34L, ObjectListing.toEntries(objects, keyAndSize).get(1).size());
+
+        assertEquals(ObjectListing.Projection.ALL, ObjectListing.Projection.parse(null));
+        assertThrows(IllegalArgumentException.class, () -> ObjectListing.Projection.parse("key,etag"));
+    }
+
+    /**
+     * 测试NDJSON输出每行一个对象并正确转义
+     */
+    @Test
+    public void testNdjson() {
+        String ndjson = ObjectListing.toNdjson(objects, ObjectListing.Projection.parse("key,size"));
+        assertEquals("{\"key\":\"a.txt\",\"size\":12}\n{\"key\":\"dir/\\\"quoted\\\".bin\",\"size\":34}\n", ndjson);
+    }
+
+    /**
+     * 测试列式输出
+     */
+    @Test
+    public void testColumns() {
+        ObjectListing.Columns columns = ObjectListing.toColumns(objects, ObjectListing.Projection.parse("size"));
+        assertEquals(2, columns.count());
+        assertEquals(List.of("a.txt", "dir/\"quoted\".bin"), columns.key());
+        assertArrayEquals(new long[]{12L, 34L}, columns.size());
+        assertNull(columns.lastModified());
+        assertEquals(ObjectListing.Format.COLUMNAR, ObjectListing.Format.parse("Columnar"));
+    }
+}
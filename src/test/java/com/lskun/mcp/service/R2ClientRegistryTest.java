@@ -0,0 +1,76 @@
+package com.lskun.mcp.service;
+
+import com.lskun.mcp.config.R2ProfileProperties;
+import com.lskun.mcp.config.R2Properties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * R2ClientRegistry多账号配置测试类（不需要访问R2）
+ */
+public class R2ClientRegistryTest {
+
+    private R2Properties properties() {
+        R2Properties properties = new R2Properties();
+        properties.setAccessKeyId("default-key");
+        properties.setSecretAccessKey("default-secret");
+        properties.setEndpoint("https://default.r2.example.com");
+
+        R2ProfileProperties archive = new R2ProfileProperties();
+        archive.setAccessKeyId("archive-key");
+        archive.setSecretAccessKey("archive-secret");
+        archive.setEndpoint("https://archive.r2.example.com");
+        archive.setMaxConnections(10);
+        properties.getProfiles().put("archive", archive);
+        return properties;
+    }
+
+    /**
+     * 测试profile名称解析与未知profile报错
+     */
+    @Test
+    public void testResolveProfiles() {
+        R2ClientRegistry registry = new R2ClientRegistry(properties());
+
+        assertEquals(R2ClientRegistry.DEFAULT_PROFILE, registry.resolve(null));
+        assertEquals(R2ClientRegistry.DEFAULT_PROFILE, registry.resolve(" "));
+        assertEquals("archive", registry.resolve("archive"));
+        assertThrows(IllegalArgumentException.class, () -> registry.resolve("missing"));
+    }
+
+    /**
+     * 测试客户端按需创建且每个profile只创建一次
+     */
+    @Test
+    public void testClientsCreatedLazily() {
+        R2ClientRegistry registry = new R2ClientRegistry(properties());
+
+        List<R2ClientRegistry.ProfileInfo> profiles = registry.listProfiles();
+        assertEquals(2, profiles.size());
+        assertFalse(profiles.get(1).connected(), "未使用的profile不应创建客户端");
+        assertEquals(10, profiles.get(1).maxConnections());
+
+        assertSame(registry.client("archive"), registry.client("archive"));
+        assertTrue(registry.listProfiles().get(1).connected());
+        assertFalse(registry.listProfiles().get(0).connected());
+        registry.close();
+    }
+
+    /**
+     * 测试全局连接数按profile平均分配，且不超过各profile自身的上限
+     */
+    @Test
+    public void testSharedConnectionBudget() {
+        R2Properties properties = properties();
+        properties.setMaxTotalConnections(30);
+        List<R2ClientRegistry.ProfileInfo> profiles = new R2ClientRegistry(properties).listProfiles();
+        assertEquals(15, profiles.get(0).maxConnections());
+        assertEquals(10, profiles.get(1).maxConnections());
+
+        properties.setMaxTotalConnections(1);
+        assertThrows(IllegalStateException.class, () -> new R2ClientRegistry(properties));
+    }
+}
@@ -0,0 +1,153 @@
+package com.lskun.mcp.service;
+
+import com.sun.net.httpserver.HttpServer;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JFR事件记录测试类（使用本地HTTP服务模拟R2，不需要访问R2）
+ */
+public class R2FlightRecorderTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * 测试工具调用与本地写入事件的字段
+     */
+    @Test
+    public void testToolCallAndLocalWriteEvents() throws IOException {
+        ToolCallback tool = new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return ToolDefinition.builder().name("listBuckets").description("test").inputSchema("{}").build();
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return "[\"logs\"]";
+            }
+        };
+
+        Path recordingFile = tempDir.resolve("tool.jfr");
+        Path target = tempDir.resolve("data.bin");
+        try (Recording recording = startRecording()) {
+            assertEquals("[\"logs\"]", new TracingToolCallback(tool).call("{}"));
+            try (OutputStream out = new R2FlightEvents.LocalWriteStream(Files.newOutputStream(target), "download", target)) {
+                out.write(new byte[1000]);
+            }
+            recording.dump(recordingFile);
+        }
+
+        RecordedEvent toolCall = single(recordingFile, "com.lskun.mcp.ToolCall");
+        assertEquals("listBuckets", toolCall.getString("tool"));
+        assertEquals(2, toolCall.getInt("argumentsLength"));
+        assertEquals(8, toolCall.getInt("resultLength"));
+        assertTrue(toolCall.getBoolean("success"));
+
+        RecordedEvent write = single(recordingFile, "com.lskun.mcp.LocalWrite");
+        assertEquals("download", write.getString("purpose"));
+        assertEquals(target.toString(), write.getString("path"));
+        assertEquals(1000, write.getLong("bytes"));
+    }
+
+    /**
+     * 测试SDK请求、HTTP尝试及对象内容传输事件
+     */
+    @Test
+    public void testRequestEvents() throws IOException {
+        byte[] content = new byte[100_000];
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getResponseHeaders().add("ETag", "\"abc\"");
+            exchange.sendResponseHeaders(200, content.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content);
+            }
+        });
+        server.start();
+
+        R2FlightRecorder recorder = new R2FlightRecorder("", Duration.ofMinutes(1));
+        Path recordingFile = tempDir.resolve("request.jfr");
+        try (Recording recording = startRecording();
+             S3Client client = S3Client.builder()
+                     .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("key", "secret")))
+                     .endpointOverride(URI.create("http://127.0.0.1:" + server.getAddress().getPort()))
+                     .region(Region.of("auto"))
+                     .serviceConfiguration(S3Configuration.builder()
+                             .checksumValidationEnabled(false)
+                             .pathStyleAccessEnabled(true)
+                             .build())
+                     .httpClientBuilder(ApacheHttpClient.builder())
+                     .overrideConfiguration(configuration -> configuration
+                             .addExecutionInterceptor(recorder)
+                             .addMetricPublisher(recorder))
+                     .build()) {
+            ResponseBytes<GetObjectResponse> bytes = client.getObjectAsBytes(builder -> builder.bucket("logs").key("a.bin"));
+            assertEquals(content.length, bytes.asByteArray().length);
+            recording.dump(recordingFile);
+        } finally {
+            server.stop(0);
+        }
+
+        RecordedEvent request = single(recordingFile, "com.lskun.mcp.Request");
+        assertEquals("GetObject", request.getString("operation"));
+        assertEquals("logs", request.getString("bucket"));
+        assertEquals("a.bin", request.getString("key"));
+        assertEquals(200, request.getInt("statusCode"));
+        assertEquals(1, request.getInt("attempts"));
+        assertTrue(request.getBoolean("success"));
+        assertTrue(request.getDuration("timeToFirstByte").toNanos() > 0);
+
+        RecordedEvent body = single(recordingFile, "com.lskun.mcp.BodyTransfer");
+        assertEquals("download", body.getString("direction"));
+        assertEquals(content.length, body.getLong("bytes"));
+        assertTrue(body.getBoolean("complete"));
+
+        RecordedEvent attempt = single(recordingFile, "com.lskun.mcp.HttpAttempt");
+        assertEquals("GetObject", attempt.getString("operation"));
+        assertEquals(200, attempt.getInt("statusCode"));
+        assertTrue(attempt.getInt("maxConnections") > 0);
+    }
+
+    private static Recording startRecording() {
+        Recording recording = new Recording();
+        for (String name : List.of("ToolCall", "Request", "HttpAttempt", "BodyTransfer", "LocalWrite")) {
+            recording.enable("com.lskun.mcp." + name).withoutThreshold();
+        }
+        recording.start();
+        return recording;
+    }
+
+    private static RecordedEvent single(Path recordingFile, String eventName) throws IOException {
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile).stream()
+                .filter(event -> event.getEventType().getName().equals(eventName))
+                .toList();
+        assertEquals(1, events.size(), "应只记录一个" + eventName + "事件");
+        return events.get(0);
+    }
+}
@@ -0,0 +1,194 @@
+package com.lskun.mcp.service;
+
+import com.lskun.mcp.config.R2Properties;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * R2ReadCoalescer GET合并测试类（使用模拟S3Client，不需要访问R2）
+ */
+public class R2ReadCoalescerTest {
+
+    private static final byte[] CONTENT = "coalesced object body".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path tempDir;
+
+    private final List<ResponseInputStream<GetObjectResponse>> opened = new CopyOnWriteArrayList<>();
+    private volatile CountDownLatch respond = new CountDownLatch(0);
+
+    private final S3Client s3Client = new S3Client() {
+        @Override
+        public ResponseInputStream<GetObjectResponse> getObject(GetObjectRequest request) {
+            try {
+                respond.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ResponseInputStream<GetObjectResponse> stream = new ResponseInputStream<>(
+                    GetObjectResponse.builder().contentLength((long) CONTENT.length).build(),
+                    AbortableInputStream.create(new ByteArrayInputStream(CONTENT)));
+            opened.add(stream);
+            return stream;
+        }
+
+        @Override
+        public String serviceName() {
+            return "s3";
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private R2ReadCoalescer coalescer() {
+        return coalescer(4096);
+    }
+
+    private R2ReadCoalescer coalescer(int memoryThreshold) {
+        R2Properties properties = new R2Properties();
+        properties.setEndpoint("https://default.r2.example.com");
+        R2ClientRegistry registry = new R2ClientRegistry(properties) {
+            @Override
+            public S3Client client(String profile) {
+                return s3Client;
+            }
+        };
+        return new R2ReadCoalescer(registry, true, memoryThreshold, tempDir.toString());
+    }
+
+    /**
+     * 测试没有其他调用者加入时直接返回响应流，不复制响应体
+     */
+    @Test
+    public void testLoneCallerStreamsResponse() throws IOException {
+        R2ReadCoalescer.SharedObjectBody body = coalescer().getObject(null, "bucket", "key", null);
+        try (InputStream in = body.openStream()) {
+            assertSame(opened.get(0), in, "单个调用者应直接读取响应流");
+            assertArrayEquals(CONTENT, in.readAllBytes());
+        } finally {
+            body.release();
+        }
+
+        R2ReadCoalescer.SharedObjectBody fileBody = coalescer().getObject(null, "bucket", "key", null);
+        Path destination = tempDir.resolve("out.bin");
+        try {
+            fileBody.writeTo(destination);
+        } finally {
+            fileBody.release();
+        }
+        assertArrayEquals(CONTENT, Files.readAllBytes(destination));
+    }
+
+    /**
+     * 测试响应到达前加入的调用者共享同一份响应体
+     */
+    @Test
+    public void testJoinedCallersShareBody() throws Exception {
+        R2ReadCoalescer coalescer = coalescer();
+        respond = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<byte[]>> results = List.of(
+                    executor.submit(() -> read(coalescer)),
+                    executor.submit(() -> read(coalescer)));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (coalescer.stats().coalesced() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            respond.countDown();
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(CONTENT, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(new R2ReadCoalescer.Stats(1, 1), coalescer.stats());
+        assertEquals(1, opened.size());
+    }
+
+    /**
+     * 测试溢出到临时文件的共享响应体：最后一个调用者移动临时文件，本地写入事件同样记录字节数
+     */
+    @Test
+    public void testSpooledBodyWriteEvents() throws Exception {
+        R2ReadCoalescer coalescer = coalescer(4);
+        respond = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<R2ReadCoalescer.SharedObjectBody> bodies;
+        try {
+            List<Future<R2ReadCoalescer.SharedObjectBody>> results = List.of(
+                    executor.submit(() -> coalescer.getObject(null, "bucket", "key", null)),
+                    executor.submit(() -> coalescer.getObject(null, "bucket", "key", null)));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (coalescer.stats().coalesced() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            respond.countDown();
+            bodies = List.of(results.get(0).get(5, TimeUnit.SECONDS), results.get(1).get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Path recordingFile = tempDir.resolve("write.jfr");
+        Path copied = tempDir.resolve("copied.bin");
+        Path moved = tempDir.resolve("moved.bin");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.lskun.mcp.LocalWrite").withoutThreshold();
+            recording.start();
+            // 第一个调用者写出时另一个仍持有引用，只能复制；释放后最后一个调用者直接移动临时文件
+            bodies.get(0).writeTo(copied);
+            bodies.get(0).release();
+            bodies.get(1).writeTo(moved);
+            bodies.get(1).release();
+            recording.dump(recordingFile);
+        }
+        assertArrayEquals(CONTENT, Files.readAllBytes(copied));
+        assertArrayEquals(CONTENT, Files.readAllBytes(moved));
+        try (var spools = Files.list(tempDir)) {
+            assertTrue(spools.noneMatch(path -> path.getFileName().toString().startsWith("r2read_")), "临时文件应被移动或删除");
+        }
+
+        List<RecordedEvent> writes = RecordingFile.readAllEvents(recordingFile).stream()
+                .filter(event -> "download".equals(event.getString("purpose")))
+                .toList();
+        assertEquals(2, writes.size());
+        for (RecordedEvent write : writes) {
+            assertEquals(CONTENT.length, write.getLong("bytes"), write.getString("path"));
+        }
+    }
+
+    private static byte[] read(R2ReadCoalescer coalescer) throws IOException {
+        R2ReadCoalescer.SharedObjectBody body = coalescer.getObject(null, "bucket", "key", null);
+        try (InputStream in = body.openStream()) {
+            return in.readAllBytes();
+        } finally {
+            body.release();
+        }
+    }
+}
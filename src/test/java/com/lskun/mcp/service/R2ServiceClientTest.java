@@ -40,14 +40,14 @@ public class R2ServiceClientTest {
     public void cleanup() {
         try {
             // 尝试删除测试对象
-            r2ServiceClient.deleteObject(testBucketName, testObjectKey);
+            r2ServiceClient.deleteObject(testBucketName, testObjectKey, null);
         } catch (Exception e) {
             // 忽略删除对象时的错误
         }
 
         try {
             // 尝试删除测试桶
-            r2ServiceClient.deleteBucket(testBucketName);
+            r2ServiceClient.deleteBucket(testBucketName, null);
         } catch (Exception e) {
             // 忽略删除桶时的错误
         }
@@ -61,7 +61,7 @@ public class R2ServiceClientTest {
     @Order(1)
     public void testListBuckets() {
         // 调用listBuckets方法
-        List<String> buckets = r2ServiceClient.listBuckets();
+        List<String> buckets = r2ServiceClient.listBuckets(null);
         
         // 验证返回结果不为null
         assertNotNull(buckets, "返回的存储桶列表不应为null");
@@ -78,14 +78,14 @@ public class R2ServiceClientTest {
     @Order(2)
     public void testCreateBucket() {
         // 调用createBucket方法
-        String result = r2ServiceClient.createBucket(testBucketName);
+        String result = r2ServiceClient.createBucket(testBucketName, null);
         
         // 验证返回结果
         assertNotNull(result, "创建桶的结果不应为null");
         assertTrue(result.contains("created successfully"), "创建桶应返回成功信息");
         
         // 验证桶确实被创建了
-        List<String> buckets = r2ServiceClient.listBuckets();
+        List<String> buckets = r2ServiceClient.listBuckets(null);
         assertTrue(buckets.contains(testBucketName), "新创建的桶应该出现在桶列表中");
         
         System.out.println("创建桶的结果：" + result);
@@ -99,10 +99,10 @@ public class R2ServiceClientTest {
     @Order(3)
     public void testUploadObject() {
         // 首先创建一个桶
-        r2ServiceClient.createBucket(testBucketName);
+        r2ServiceClient.createBucket(testBucketName, null);
         
         // 调用uploadObject方法
-        String result = r2ServiceClient.uploadObject(testBucketName, testObjectKey, testObjectContent, testContentType, "text");
+        String result = r2ServiceClient.uploadObject(testBucketName, testObjectKey, testObjectContent, testContentType, "text", null, null);
         
         // 验证返回结果
         assertNotNull(result, "上传对象的结果不应为null");
@@ -118,20 +118,20 @@ public class R2ServiceClientTest {
     @Order(3)
     public void testUploadBase64Content() {
         // 首先创建一个桶
-        r2ServiceClient.createBucket(testBucketName);
+        r2ServiceClient.createBucket(testBucketName, null);
         
         // Base64编码的简单文本
         String base64Content = java.util.Base64.getEncoder().encodeToString("这是Base64编码的测试内容".getBytes());
         
         // 调用uploadObject方法，使用base64格式
-        String result = r2ServiceClient.uploadObject(testBucketName, "base64-test.bin", base64Content, "application/octet-stream", "base64");
+        String result = r2ServiceClient.uploadObject(testBucketName, "base64-test.bin", base64Content, "application/octet-stream", "base64", null, null);
         
         // 验证返回结果
         assertNotNull(result, "上传对象的结果不应为null");
         assertTrue(result.contains("uploaded successfully"), "上传对象应返回成功信息");
         
         // 下载并验证内容
-        String downloadedContent = r2ServiceClient.downloadObject(testBucketName, "base64-test.bin", null, "text");
+        String downloadedContent = r2ServiceClient.downloadObject(testBucketName, "base64-test.bin", null, "text", null, null);
         assertEquals("这是Base64编码的测试内容", downloadedContent, "下载的内容应与上传前的原始内容一致");
         
         System.out.println("上传Base64内容的结果：" + result);
@@ -144,7 +144,7 @@ public class R2ServiceClientTest {
     @Order(3)
     public void testUploadFromPath() throws Exception {
         // 首先创建一个桶
-        r2ServiceClient.createBucket(testBucketName);
+        r2ServiceClient.createBucket(testBucketName, null);
         
         // 创建一个临时文件
         java.io.File tempFile = java.io.File.createTempFile("upload-test-", ".txt");
@@ -156,14 +156,14 @@ public class R2ServiceClientTest {
         }
         
         // 调用uploadObject方法，使用path格式
-        String result = r2ServiceClient.uploadObject(testBucketName, "path-test.txt", tempFile.getAbsolutePath(), "text/plain", "path");
+        String result = r2ServiceClient.uploadObject(testBucketName, "path-test.txt", tempFile.getAbsolutePath(), "text/plain", "path", null, null);
         
         // 验证返回结果
         assertNotNull(result, "上传对象的结果不应为null");
         assertTrue(result.contains("uploaded successfully"), "上传对象应返回成功信息");
         
         // 下载并验证内容
-        String downloadedContent = r2ServiceClient.downloadObject(testBucketName, "path-test.txt", null, "text");
+        String downloadedContent = r2ServiceClient.downloadObject(testBucketName, "path-test.txt", null, "text", null, null);
         assertEquals("这是从文件上传的测试内容", downloadedContent, "下载的内容应与上传前的原始内容一致");
         
         System.out.println("从文件路径上传内容的结果：" + result);
@@ -176,17 +176,17 @@ public class R2ServiceClientTest {
     @Order(3)
     public void testDefaultContentFormat() {
         // 首先创建一个桶
-        r2ServiceClient.createBucket(testBucketName);
+        r2ServiceClient.createBucket(testBucketName, null);
         
         // 调用uploadObject方法，不指定contentFormat
-        String result = r2ServiceClient.uploadObject(testBucketName, "default-format.txt", "这是使用默认格式的测试内容", "text/plain", null);
+        String result = r2ServiceClient.uploadObject(testBucketName, "default-format.txt", "这是使用默认格式的测试内容", "text/plain", null, null, null);
         
         // 验证返回结果
         assertNotNull(result, "上传对象的结果不应为null");
         assertTrue(result.contains("uploaded successfully"), "上传对象应返回成功信息");
         
         // 下载并验证内容
-        String downloadedContent = r2ServiceClient.downloadObject(testBucketName, "default-format.txt", null, "text");
+        String downloadedContent = r2ServiceClient.downloadObject(testBucketName, "default-format.txt", null, "text", null, null);
         assertEquals("这是使用默认格式的测试内容", downloadedContent, "下载的内容应与上传的内容一致");
         
         System.out.println("使用默认内容格式上传的结果：" + result);
@@ -200,16 +200,16 @@ public class R2ServiceClientTest {
     @Order(4)
     public void testListObjects() {
         // 首先创建一个桶并上传一个对象
-        r2ServiceClient.createBucket(testBucketName);
-        r2ServiceClient.uploadObject(testBucketName, testObjectKey, testObjectContent, testContentType, "text");
+        r2ServiceClient.createBucket(testBucketName, null);
+        r2ServiceClient.uploadObject(testBucketName, testObjectKey, testObjectContent, testContentType, "text", null, null);
         
         // 调用listObjects方法
-        List<Map<String, String>> objects = r2ServiceClient.listObjects(testBucketName, "");
+        List<ObjectListing.Entry> objects = r2ServiceClient.listObjects(testBucketName, "");
         
         // 验证返回结果
         assertNotNull(objects, "返回的对象列表不应为null");
         assertFalse(objects.isEmpty(), "对象列表不应为空");
-        assertEquals(testObjectKey, objects.get(0).get("key"), "对象名称应匹配上传的名称");
+        assertEquals(testObjectKey, objects.get(0).key(), "对象名称应匹配上传的名称");
         
         System.out.println("找到的对象列表：" + objects);
     }
@@ -222,11 +222,11 @@ public class R2ServiceClientTest {
     @Order(5)
     public void testDownloadObject() {
         // 首先创建一个桶并上传一个对象
-        r2ServiceClient.createBucket(testBucketName);
-        r2ServiceClient.uploadObject(testBucketName, testObjectKey, testObjectContent, testContentType, "text");
+        r2ServiceClient.createBucket(testBucketName, null);
+        r2ServiceClient.uploadObject(testBucketName, testObjectKey, testObjectContent, testContentType, "text", null, null);
         
         // 调用downloadObject方法并指定返回类型为text
-        String result = r2ServiceClient.downloadObject(testBucketName, testObjectKey, null, "text");
+        String result = r2ServiceClient.downloadObject(testBucketName, testObjectKey, null, "text", null, null);
         
         // 验证返回结果
         assertNotNull(result, "下载的对象内容不应为null");
@@ -244,14 +244,14 @@ public class R2ServiceClientTest {
     @Order(5)
     public void testDownloadObjectToFile() {
         // 首先创建一个桶并上传一个对象
-        r2ServiceClient.createBucket(testBucketName);
-        r2ServiceClient.uploadObject(testBucketName, testObjectKey, testObjectContent, testContentType, "text");
+        r2ServiceClient.createBucket(testBucketName, null);
+        r2ServiceClient.uploadObject(testBucketName, testObjectKey, testObjectContent, testContentType, "text", null, null);
         
         // 创建临时文件路径
         String tempFilePath = System.getProperty("java.io.tmpdir") + "/test-download-" + System.currentTimeMillis() + ".txt";
         
         // 调用downloadObject方法并指定保存到文件
-        String result = r2ServiceClient.downloadObject(testBucketName, testObjectKey, tempFilePath, "file");
+        String result = r2ServiceClient.downloadObject(testBucketName, testObjectKey, tempFilePath, "file", null, null);
         
         // 验证返回结果
         assertNotNull(result, "下载结果不应为null");
@@ -269,11 +269,11 @@ public class R2ServiceClientTest {
     @Order(6)
     public void testGetObjectMetadata() {
         // 首先创建一个桶并上传一个对象
-        r2ServiceClient.createBucket(testBucketName);
-        r2ServiceClient.uploadObject(testBucketName, testObjectKey, testObjectContent, testContentType, "text");
+        r2ServiceClient.createBucket(testBucketName, null);
+        r2ServiceClient.uploadObject(testBucketName, testObjectKey, testObjectContent, testContentType, "text", null, null);
         
         // 调用getObjectMetadata方法
-        Map<String, String> metadata = r2ServiceClient.getObjectMetadata(testBucketName, testObjectKey);
+        Map<String, String> metadata = r2ServiceClient.getObjectMetadata(testBucketName, testObjectKey, null);
         
         // 验证返回结果
         assertNotNull(metadata, "对象元数据不应为null");
@@ -291,18 +291,18 @@ public class R2ServiceClientTest {
     @Order(7)
     public void testDeleteObject() {
         // 首先创建一个桶并上传一个对象
-        r2ServiceClient.createBucket(testBucketName);
-        r2ServiceClient.uploadObject(testBucketName, testObjectKey, testObjectContent, testContentType, "text");
+        r2ServiceClient.createBucket(testBucketName, null);
+        r2ServiceClient.uploadObject(testBucketName, testObjectKey, testObjectContent, testContentType, "text", null, null);
         
         // 调用deleteObject方法
-        String result = r2ServiceClient.deleteObject(testBucketName, testObjectKey);
+        String result = r2ServiceClient.deleteObject(testBucketName, testObjectKey, null);
         
         // 验证返回结果
         assertNotNull(result, "删除对象的结果不应为null");
         assertTrue(result.contains("deleted successfully"), "删除对象应返回成功信息");
         
         // 验证对象确实被删除了
-        List<Map<String, String>> objects = r2ServiceClient.listObjects(testBucketName, "");
+        List<ObjectListing.Entry> objects = r2ServiceClient.listObjects(testBucketName, "");
         assertTrue(objects.isEmpty(), "删除后桶中不应有对象");
         
         System.out.println("删除对象的结果：" + result);
@@ -316,17 +316,17 @@ public class R2ServiceClientTest {
     @Order(8)
     public void testDeleteBucket() {
         // 首先创建一个桶
-        r2ServiceClient.createBucket(testBucketName);
+        r2ServiceClient.createBucket(testBucketName, null);
         
         // 调用deleteBucket方法
-        String result = r2ServiceClient.deleteBucket(testBucketName);
+        String result = r2ServiceClient.deleteBucket(testBucketName, null);
         
         // 验证返回结果
         assertNotNull(result, "删除桶的结果不应为null");
         assertTrue(result.contains("deleted successfully"), "删除桶应返回成功信息");
         
         // 验证桶确实被删除了
-        List<String> buckets = r2ServiceClient.listBuckets();
+        List<String> buckets = r2ServiceClient.listBuckets(null);
         assertFalse(buckets.contains(testBucketName), "删除后桶列表中不应包含该桶");
         
         System.out.println("删除桶的结果：" + result);
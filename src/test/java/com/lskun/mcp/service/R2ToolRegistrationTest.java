@@ -0,0 +1,93 @@
+package com.lskun.mcp.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.tool.ToolCallbacks;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 工具注册测试类（不需要访问R2）
+ */
+public class R2ToolRegistrationTest {
+
+    private static final List<Class<?>> TOOL_CLASSES = List.of(
+            R2ServiceClient.class, R2UsageService.class, R2ArchiveService.class, R2BatchMetadataService.class,
+            R2TransferJobService.class, TransferScheduler.class, R2WriteBehindService.class);
+
+    // 工具名 -> 可选参数；未列出的参数必须出现在inputSchema的required中
+    private static final Map<String, Set<String>> OPTIONAL_PARAMETERS = Map.ofEntries(
+            Map.entry("getPrefixUsage", Set.of("prefix", "refresh", "profile")),
+            Map.entry("listObjects", Set.of("prefix", "fields", "format", "profile")),
+            Map.entry("uploadArchive", Set.of("keyPrefix", "format", "profile")),
+            Map.entry("downloadPrefixAsArchive", Set.of("format", "profile")),
+            Map.entry("getObjectsMetadata", Set.of("keys", "prefix", "maxKeys", "concurrency", "profile")),
+            Map.entry("submitUploadJob", Set.of("contentType", "profile")),
+            Map.entry("submitDownloadJob", Set.of("destinationPath", "profile")),
+            Map.entry("listJobs", Set.of("state")),
+            Map.entry("setBandwidthLimit", Set.of("bucketName")),
+            Map.entry("downloadObject", Set.of("offset", "profile")),
+            Map.entry("uploadObject", Set.of("writeBehind", "profile")),
+            Map.entry("flushWriteBehind", Set.of("bucketName", "timeoutSeconds", "profile")));
+
+    /**
+     * 测试R2ServiceClient的所有@Tool方法都注册为工具（返回Object等函数式类型的方法会被Spring AI静默忽略）
+     */
+    @Test
+    public void testAllToolsRegistered() {
+        R2ServiceClient client = new R2ServiceClient(null, null, null, null, null, null);
+        Set<String> registered = Arrays.stream(ToolCallbacks.from(client))
+                .map(callback -> callback.getToolDefinition().name())
+                .collect(Collectors.toSet());
+
+        assertTrue(registered.contains("listObjects"), "listObjects未注册: " + registered);
+        for (Method method : R2ServiceClient.class.getDeclaredMethods()) {
+            if (method.isAnnotationPresent(Tool.class)) {
+                assertTrue(registered.contains(method.getName()), method.getName() + "未注册: " + registered);
+            }
+        }
+    }
+
+    /**
+     * 测试生成的inputSchema中required只包含必填参数（未标注@ToolParam(required = false)的参数都会被视为必填）
+     */
+    @Test
+    public void testOptionalParametersNotRequired() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, ToolDefinition> definitions = new HashMap<>();
+        for (Class<?> toolClass : TOOL_CLASSES) {
+            for (Method method : toolClass.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(Tool.class)) {
+                    ToolDefinition definition = ToolDefinition.from(method);
+                    definitions.put(definition.name(), definition);
+                }
+            }
+        }
+
+        for (Map.Entry<String, Set<String>> entry : OPTIONAL_PARAMETERS.entrySet()) {
+            ToolDefinition definition = definitions.get(entry.getKey());
+            assertNotNull(definition, entry.getKey() + "未注册");
+            JsonNode schema = mapper.readTree(definition.inputSchema());
+            Set<String> expected = new HashSet<>();
+            schema.get("properties").fieldNames().forEachRemaining(expected::add);
+            assertTrue(expected.containsAll(entry.getValue()), entry.getKey() + "缺少参数: " + expected);
+            expected.removeAll(entry.getValue());
+
+            Set<String> required = new HashSet<>();
+            schema.path("required").forEach(name -> required.add(name.asText()));
+            assertEquals(expected, required, entry.getKey() + "的required参数不正确");
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.lskun.mcp.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 写回（write-behind）上传队列测试类（使用模拟上传，不需要访问R2）
+ */
+public class R2WriteBehindServiceTest {
+
+    @TempDir
+    Path spoolDir;
+
+    private final Map<String, String> uploaded = new ConcurrentHashMap<>();
+    private final List<String> uploadOrder = new CopyOnWriteArrayList<>();
+
+    private void record(R2WriteBehindService.SpooledWrite write) throws IOException {
+        try (InputStream in = write.requestBody().contentStreamProvider().newStream()) {
+            String content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            uploaded.put(write.target().key(), content);
+            uploadOrder.add(write.target().key() + "=" + content);
+        }
+    }
+
+    /**
+     * 测试同一键的多次写入只上传最新版本，且flush屏障等待上传完成
+     */
+    @Test
+    public void testCoalescesWritesToSameKey() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        R2WriteBehindService service = new R2WriteBehindService(write -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            record(write);
+        }, spoolDir, 2, 100, Duration.ofMillis(10), 10, Duration.ofSeconds(1));
+        try {
+            // 第一次写入正在上传时，后续写入合并为一个待上传版本
+            service.enqueue("default", "state", "status.json", "application/json", RequestBody.fromString("v1"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 2; i <= 5; i++) {
+                service.enqueue("default", "state", "status.json", "application/json", RequestBody.fromString("v" + i));
+            }
+            R2WriteBehindService.WriteBehindStatus pending = service.getWriteBehindStatus();
+            assertEquals(1, pending.pendingWrites());
+            assertEquals(1, pending.uploadingWrites());
+            assertEquals(3, pending.coalescedWrites());
+
+            release.countDown();
+            R2WriteBehindService.WriteBehindStatus flushed = service.flushWriteBehind("state", 5, null);
+            assertTrue(flushed.flushed());
+            assertEquals(List.of("status.json=v1", "status.json=v5"), uploadOrder);
+            assertEquals(2, flushed.uploadedWrites());
+            assertEquals(0, flushed.pendingWrites());
+            assertEquals(0, spooledFiles(), "上传完成后spool文件应被删除");
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * 测试上传失败后保留在spool中并重试，flush超时时报告失败信息
+     */
+    @Test
+    public void testFailedUploadsAreRetried() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        R2WriteBehindService service = new R2WriteBehindService(write -> {
+            if (attempts.incrementAndGet() <= 2) {
+                throw new IOException("connection reset");
+            }
+            record(write);
+        }, spoolDir, 1, 100, Duration.ofMillis(20), 10, Duration.ofSeconds(1));
+        try {
+            service.enqueue("default", "state", "a.txt", "text/plain", RequestBody.fromString("hello"));
+            R2WriteBehindService.WriteBehindStatus status = service.flushWriteBehind(null, 5, null);
+            assertTrue(status.flushed());
+            assertEquals("hello", uploaded.get("a.txt"));
+            assertEquals(2, status.failedAttempts());
+            assertTrue(status.failing().isEmpty());
+        } finally {
+            service.shutdown();
+        }
+
+        R2WriteBehindService failing = new R2WriteBehindService(write -> {
+            throw new IOException("access denied");
+        }, spoolDir, 1, 100, Duration.ofSeconds(10), 10, Duration.ofSeconds(1));
+        try {
+            failing.enqueue("default", "state", "b.txt", "text/plain", RequestBody.fromString("x"));
+            R2WriteBehindService.WriteBehindStatus status = failing.flushWriteBehind("state", 1, null);
+            assertFalse(status.flushed());
+            assertEquals(1, status.failing().size());
+            assertEquals("access denied", status.failing().get(0).lastError());
+        } finally {
+            failing.shutdown();
+        }
+    }
+
+    /**
+     * 测试连续失败达到最大次数后放弃上传，数据保留为死信文件，重启后仍可见，同一键的新版本上传后清除
+     */
+    @Test
+    public void testGivesUpAfterMaxAttempts() throws Exception {
+        AtomicBoolean online = new AtomicBoolean();
+        R2WriteBehindService service = new R2WriteBehindService(write -> {
+            if (!online.get()) {
+                throw new IOException("offline");
+            }
+            record(write);
+        }, spoolDir, 1, 100, Duration.ofMillis(10), 3, Duration.ofSeconds(1));
+        try {
+            service.enqueue("default", "state", "a.txt", "text/plain", RequestBody.fromString("a1"));
+            R2WriteBehindService.WriteBehindStatus status = service.flushWriteBehind(null, 5, null);
+            assertFalse(status.flushed(), "放弃的写入不算已上传");
+            assertEquals(0, status.pendingWrites());
+            assertTrue(status.failing().isEmpty());
+            assertEquals(3, status.failedAttempts());
+            assertEquals(1, status.deadLetters().size());
+            R2WriteBehindService.DeadLetter dead = status.deadLetters().get(0);
+            assertEquals("a.txt", dead.key());
+            assertEquals(3, dead.attempts());
+            assertEquals("offline", dead.lastError());
+            assertTrue(dead.spoolFile().endsWith(R2WriteBehindService.DEAD_SUFFIX));
+            assertTrue(Files.readString(Path.of(dead.spoolFile())).endsWith("\na1"), "死信文件应保留写入的数据");
+        } finally {
+            service.shutdown();
+        }
+
+        online.set(true);
+        R2WriteBehindService restarted = new R2WriteBehindService(this::record, spoolDir, 1, 100,
+                Duration.ofMillis(10), 3, Duration.ofSeconds(1));
+        try {
+            assertEquals(1, restarted.getWriteBehindStatus().deadLetters().size());
+            assertFalse(restarted.flushWriteBehind("state", 0, null).flushed());
+            assertTrue(uploaded.isEmpty(), "死信不应在重启后自动重试");
+
+            restarted.enqueue("default", "state", "a.txt", "text/plain", RequestBody.fromString("a2"));
+            R2WriteBehindService.WriteBehindStatus status = restarted.flushWriteBehind("state", 5, null);
+            assertTrue(status.flushed());
+            assertTrue(status.deadLetters().isEmpty());
+            assertEquals(Map.of("a.txt", "a2"), uploaded);
+            assertEquals(0, spooledFiles());
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    /**
+     * 测试R2拒绝请求本身（如存储桶不存在）时不再重试
+     */
+    @Test
+    public void testClientErrorsAreNotRetried() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        R2WriteBehindService service = new R2WriteBehindService(write -> {
+            attempts.incrementAndGet();
+            throw S3Exception.builder().statusCode(404).message("The specified bucket does not exist").build();
+        }, spoolDir, 1, 100, Duration.ofMillis(10), 10, Duration.ofSeconds(1));
+        try {
+            service.enqueue("default", "missing", "a.txt", "text/plain", RequestBody.fromString("a1"));
+            R2WriteBehindService.WriteBehindStatus status = service.flushWriteBehind("missing", 5, null);
+            assertFalse(status.flushed());
+            assertEquals(1, attempts.get());
+            assertEquals(1, status.deadLetters().size());
+            assertEquals(1, status.deadLetters().get(0).attempts());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * 测试flush只等待所选profile的写入，未指定存储桶时也不等待其他profile
+     */
+    @Test
+    public void testFlushFiltersByProfile() throws Exception {
+        R2WriteBehindService service = new R2WriteBehindService(write -> {
+            throw new IOException("offline");
+        }, spoolDir, 1, 100, Duration.ofMinutes(1), 10, Duration.ofMillis(100));
+        try {
+            service.enqueue("archive", "state", "a.txt", "text/plain", RequestBody.fromString("a1"));
+            assertTrue(service.flushWriteBehind(null, 0, null).flushed(), "默认profile没有待上传的写入");
+            assertTrue(service.flushWriteBehind("state", 0, "default").flushed());
+            assertFalse(service.flushWriteBehind(null, 0, "archive").flushed());
+            assertFalse(service.flushWriteBehind("state", 0, "archive").flushed());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * 测试重启后从spool恢复未上传的写入，并按顺序合并
+     */
+    @Test
+    public void testRecoversSpooledWritesAfterRestart() throws Exception {
+        R2WriteBehindService offline = new R2WriteBehindService(write -> {
+            throw new IOException("offline");
+        }, spoolDir, 1, 100, Duration.ofMinutes(1), 10, Duration.ofMillis(100));
+        offline.enqueue("default", "state", "a.txt", "text/plain", RequestBody.fromString("a1"));
+        offline.enqueue("default", "state", "b.txt", "text/plain", RequestBody.fromString("b1"));
+        Thread.sleep(100);
+        offline.enqueue("default", "state", "a.txt", "text/plain", RequestBody.fromString("a2"));
+        offline.shutdown();
+        // 模拟崩溃时未完成落盘的临时文件
+        Files.writeString(spoolDir.resolve("00000000000000000099.wb.tmp"), "partial");
+
+        R2WriteBehindService restarted = new R2WriteBehindService(this::record, spoolDir, 2, 100,
+                Duration.ofMillis(10), 10, Duration.ofSeconds(1));
+        try {
+            assertTrue(restarted.flushWriteBehind(null, 5, null).flushed());
+            assertEquals(Map.of("a.txt", "a2", "b.txt", "b1"), uploaded);
+            assertEquals(0, spooledFiles());
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    /**
+     * 测试队列已满时拒绝新写入，但允许合并到已排队的键
+     */
+    @Test
+    public void testRejectsWhenFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        R2WriteBehindService service = new R2WriteBehindService(write -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+        }, spoolDir, 1, 2, Duration.ofMillis(10), 10, Duration.ofSeconds(1));
+        try {
+            service.enqueue("default", "state", "a.txt", "text/plain", RequestBody.fromString("1"));
+            service.enqueue("default", "state", "b.txt", "text/plain", RequestBody.fromString("1"));
+            assertThrows(IllegalStateException.class,
+                    () -> service.enqueue("default", "state", "c.txt", "text/plain", RequestBody.fromString("1")));
+            // a.txt上传中，b.txt仍在排队，可合并
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            service.enqueue("default", "state", "b.txt", "text/plain", RequestBody.fromString("2"));
+            release.countDown();
+            assertTrue(service.flushWriteBehind(null, 5, null).flushed());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * 测试spool目录被另一个实例锁定时拒绝写回且不恢复其文件，锁释放后接管并恢复
+     */
+    @Test
+    public void testSpoolLockedByAnotherInstance() throws Exception {
+        R2WriteBehindService owner = new R2WriteBehindService(write -> {
+            throw new IOException("offline");
+        }, spoolDir, 1, 100, Duration.ofMinutes(1), 10, Duration.ofMillis(100));
+        R2WriteBehindService other = new R2WriteBehindService(this::record, spoolDir, 1, 100,
+                Duration.ofMillis(10), 10, Duration.ofSeconds(1));
+        try {
+            owner.enqueue("default", "state", "a.txt", "text/plain", RequestBody.fromString("a1"));
+            assertThrows(IllegalStateException.class,
+                    () -> other.enqueue("default", "state", "b.txt", "text/plain", RequestBody.fromString("b1")));
+            assertEquals(0, other.getWriteBehindStatus().pendingWrites());
+            assertTrue(uploaded.isEmpty(), "未持有锁的实例不应上传其他实例的写入");
+            assertEquals(1, spooledFiles());
+
+            // 持有者退出后，另一个实例定期重试加锁，接管并上传遗留的写入，无需等到下一次写入
+            owner.shutdown();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!uploaded.containsKey("a.txt") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(Map.of("a.txt", "a1"), uploaded);
+
+            other.enqueue("default", "state", "b.txt", "text/plain", RequestBody.fromString("b1"));
+            assertTrue(other.flushWriteBehind(null, 5, null).flushed());
+            assertEquals(Map.of("a.txt", "a1", "b.txt", "b1"), uploaded);
+            assertEquals(0, spooledFiles());
+        } finally {
+            owner.shutdown();
+            other.shutdown();
+        }
+    }
+
+    private long spooledFiles() throws IOException {
+        try (var files = Files.list(spoolDir)) {
+            return files.filter(file -> !file.getFileName().toString().equals(R2WriteBehindService.LOCK_FILE)).count();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.lskun.mcp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SingleFlight请求合并测试类（不需要访问R2）
+ */
+public class SingleFlightTest {
+
+    /**
+     * 测试并发的相同请求只执行一次并共享结果
+     */
+    @Test
+    public void testConcurrentCallsCoalesced() throws Exception {
+        AtomicInteger participants = new AtomicInteger();
+        SingleFlight<String, String> flights = new SingleFlight<>((value, count) -> participants.set(count));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 8;
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> flights.execute("bucket/key", () -> {
+                    loads.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "body";
+                })));
+            }
+            // 等待所有调用者加入同一个请求
+            long deadline = System.currentTimeMillis() + 5000;
+            while (flights.coalesced() < callers - 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("body", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, loads.get(), "相同请求应只执行一次");
+        assertEquals(callers, participants.get(), "所有调用者都应计入参与者");
+        assertEquals(1, flights.executions());
+    }
+
+    /**
+     * 测试请求完成后不缓存结果，异常会传递给调用者
+     */
+    @Test
+    public void testNoCachingAndErrorPropagation() {
+        SingleFlight<String, Integer> flights = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(1, flights.execute("k", loads::incrementAndGet));
+        assertEquals(2, flights.execute("k", loads::incrementAndGet));
+
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> flights.execute("k", () -> {
+                    throw new IllegalStateException("boom");
+                }));
+        assertEquals("boom", error.getMessage());
+        assertEquals(3, flights.execute("k", loads::incrementAndGet));
+    }
+
+    /**
+     * 测试领导者提前关闭后参与者数量确定，后续调用重新执行
+     */
+    @Test
+    public void testClosedFlightStartsNewExecution() {
+        AtomicInteger participants = new AtomicInteger();
+        SingleFlight<String, String> flights = new SingleFlight<>((value, count) -> participants.set(count));
+
+        String value = flights.executeClosing("k", close -> {
+            assertEquals(1, close.getAsInt(), "没有其他调用者加入");
+            // 关闭后到达的调用者不会加入当前执行
+            assertEquals("inner", flights.execute("k", () -> "inner"));
+            return "outer";
+        });
+        assertEquals("outer", value);
+        assertEquals(1, participants.get());
+        assertEquals(2, flights.executions());
+        assertEquals(0, flights.coalesced());
+    }
+}
@@ -0,0 +1,184 @@
+package com.lskun.mcp.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * TarArchive读写及归档工具辅助方法测试类（不需要访问R2）
+ */
+public class TarArchiveTest {
+
+    /**
+     * 测试写入后再读取，包括ustar前缀与GNU长文件名
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        String shortName = "docs/readme.txt";
+        String prefixedName = "a".repeat(120) + "/file.bin";
+        String longName = "b".repeat(300) + ".log";
+        byte[] first = "hello tar".getBytes(StandardCharsets.UTF_8);
+        byte[] second = new byte[1500];
+        byte[] third = "这是长文件名条目".getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < second.length; i++) {
+            second[i] = (byte) i;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TarArchive.Writer writer = new TarArchive.Writer(out)) {
+            writer.putEntry(shortName, first.length, 1_700_000_000_000L);
+            writer.write(first, 0, first.length);
+            writer.putEntry(prefixedName, second.length, 0);
+            writer.write(second, 0, second.length);
+            writer.putEntry(longName, third.length, 0);
+            writer.write(third, 0, third.length);
+        }
+        assertEquals(0, out.size() % TarArchive.BLOCK_SIZE, "归档大小应按块对齐");
+
+        try (TarArchive.Reader reader = new TarArchive.Reader(new ByteArrayInputStream(out.toByteArray()))) {
+            TarArchive.Entry entry = reader.next();
+            assertEquals(shortName, entry.name());
+            assertEquals(1_700_000_000_000L, entry.modifiedMillis());
+            assertArrayEquals(first, readEntry(reader, entry));
+
+            entry = reader.next();
+            assertEquals(prefixedName, entry.name());
+            assertArrayEquals(second, readEntry(reader, entry));
+
+            // 不读取数据直接跳到下一个条目
+            entry = reader.next();
+            assertEquals(longName, entry.name());
+            assertEquals(third.length, entry.size());
+
+            assertNull(reader.next());
+        }
+    }
+
+    /**
+     * 测试读取GNU tar生成的归档：--format=gnu使用././@LongLink长文件名，--format=pax使用x扩展头记录路径
+     * （测试资源由 tar --format=gnu|pax -b 1 --mtime='2024-01-02 03:04:05Z' --sort=name 生成）
+     */
+    @Test
+    public void testReadsArchivesFromGnuTar() throws IOException {
+        String longName = "./" + "d".repeat(110) + "/" + "f".repeat(150) + ".txt";
+        for (String resource : List.of("/tar/gnu.tar", "/tar/pax.tar")) {
+            try (InputStream in = TarArchiveTest.class.getResourceAsStream(resource);
+                 TarArchive.Reader reader = new TarArchive.Reader(in)) {
+                TarArchive.Entry entry = reader.next();
+                assertEquals(longName, entry.name(), resource);
+                assertEquals(1_704_164_645_000L, entry.modifiedMillis(), resource);
+                assertEquals("gnu long name\n", new String(readEntry(reader, entry), StandardCharsets.UTF_8), resource);
+
+                // 目录条目被跳过
+                entry = reader.next();
+                assertEquals("./ünïcode-名前.txt", entry.name(), resource);
+                assertEquals("短\n", new String(readEntry(reader, entry), StandardCharsets.UTF_8), resource);
+
+                assertNull(reader.next(), resource);
+            }
+        }
+    }
+
+    /**
+     * 测试写入的ustar前缀与长文件名归档可被GNU tar正确列出（tar会转义非ASCII名称，这里只用ASCII；系统中没有tar命令时跳过）
+     */
+    @Test
+    public void testGnuTarListsWrittenArchive(@TempDir Path tempDir) throws Exception {
+        List<String> names = List.of("docs/readme.txt", "a".repeat(120) + "/file.bin", "b".repeat(300) + ".log");
+        Path archive = tempDir.resolve("written.tar");
+        try (TarArchive.Writer writer = new TarArchive.Writer(Files.newOutputStream(archive))) {
+            for (String name : names) {
+                byte[] data = name.getBytes(StandardCharsets.UTF_8);
+                writer.putEntry(name, data.length, 0);
+                writer.write(data, 0, data.length);
+            }
+        }
+
+        Process process;
+        try {
+            process = new ProcessBuilder("tar", "-tf", archive.toString()).redirectErrorStream(true).start();
+        } catch (IOException e) {
+            assumeTrue(false, "tar不可用: " + e.getMessage());
+            return;
+        }
+        String listing = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+        assertEquals(0, process.exitValue(), listing);
+        assertEquals(names, listing.lines().toList());
+    }
+
+    /**
+     * 测试条目数据长度与声明不一致时报错
+     */
+    @Test
+    public void testSizeMismatchRejected() throws IOException {
+        TarArchive.Writer writer = new TarArchive.Writer(new ByteArrayOutputStream());
+        writer.putEntry("x", 2, 0);
+        assertThrows(IOException.class, () -> writer.write(new byte[3], 0, 3));
+        writer.write(new byte[1], 0, 1);
+        assertThrows(IOException.class, () -> writer.putEntry("y", 0, 0));
+    }
+
+    /**
+     * 测试归档格式推断与条目名称规范化
+     */
+    @Test
+    public void testFormatAndEntryNames() {
+        assertEquals(R2ArchiveService.ArchiveFormat.TAR_GZ, R2ArchiveService.ArchiveFormat.parse(null, "/tmp/x.tgz"));
+        assertEquals(R2ArchiveService.ArchiveFormat.TAR, R2ArchiveService.ArchiveFormat.parse("", "/tmp/x.tar"));
+        assertEquals(R2ArchiveService.ArchiveFormat.ZIP, R2ArchiveService.ArchiveFormat.parse(null, "/tmp/x.bin"));
+        assertEquals(R2ArchiveService.ArchiveFormat.TAR_GZ, R2ArchiveService.ArchiveFormat.parse("tar.gz", "/tmp/x.zip"));
+        assertThrows(IllegalArgumentException.class, () -> R2ArchiveService.ArchiveFormat.parse("rar", "/tmp/x"));
+
+        assertEquals("dir/file.txt", R2ArchiveService.normalizeEntryName("./dir/file.txt"));
+        assertEquals("dir/file.txt", R2ArchiveService.normalizeEntryName("/dir\\file.txt"));
+        assertEquals("dir/sub/file.txt", R2ArchiveService.normalizeEntryName("dir/./sub//file.txt"));
+        assertThrows(IllegalArgumentException.class, () -> R2ArchiveService.normalizeEntryName("../etc/passwd"));
+        assertThrows(IllegalArgumentException.class, () -> R2ArchiveService.normalizeEntryName("dir/..\\..\\x"));
+        assertThrows(IllegalArgumentException.class, () -> R2ArchiveService.normalizeEntryName("./"));
+    }
+
+    /**
+     * 测试未知大小的条目从小缓冲区增长读取，最多读取一个分段
+     */
+    @Test
+    public void testReadHeadGrowsForUnknownSize() throws IOException {
+        byte[] small = "tiny entry".getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(small, R2ArchiveService.readHead(new ByteArrayInputStream(small), -1, 1 << 20));
+        assertArrayEquals(small, R2ArchiveService.readHead(new ByteArrayInputStream(small), small.length, 1 << 20));
+
+        byte[] large = new byte[300 * 1024];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) i;
+        }
+        ByteArrayInputStream in = new ByteArrayInputStream(large);
+        byte[] head = R2ArchiveService.readHead(in, -1, 200 * 1024);
+        assertEquals(200 * 1024, head.length);
+        assertArrayEquals(Arrays.copyOf(large, head.length), head);
+        assertEquals(100 * 1024, in.available(), "剩余数据应留给分段上传");
+    }
+
+    private static byte[] readEntry(TarArchive.Reader reader, TarArchive.Entry entry) throws IOException {
+        byte[] data = new byte[(int) entry.size()];
+        int offset = 0;
+        int read;
+        while ((read = reader.read(data, offset, data.length - offset)) > 0) {
+            offset += read;
+        }
+        assertEquals(-1, reader.read(new byte[1], 0, 1));
+        return data;
+    }
+}
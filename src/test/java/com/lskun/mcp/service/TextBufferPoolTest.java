@@ -0,0 +1,123 @@
+package com.lskun.mcp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 文本下载缓冲池与字符集解析测试类（不需要访问R2）
+ */
+public class TextBufferPoolTest {
+
+    /**
+     * 测试分段读取不会截断多字节字符，拼接后与原文一致
+     */
+    @Test
+    public void testPartialReadStopsAtCharacterBoundary() throws IOException {
+        TextBufferPool pool = new TextBufferPool(1024, 2);
+        String text = "中文内容".repeat(200);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+        StringBuilder result = new StringBuilder();
+        int offset = 0;
+        while (offset < bytes.length) {
+            int end = Math.min(bytes.length, offset + pool.maxBytes());
+            TextBufferPool.TextChunk chunk = pool.read(new ByteArrayInputStream(bytes, offset, end - offset),
+                    StandardCharsets.UTF_8, end == bytes.length);
+            assertTrue(chunk.bytesConsumed() > 0);
+            assertEquals(0, chunk.bytesConsumed() % 3, "每个中文字符占3个字节，读取应停在字符边界");
+            result.append(chunk.text());
+            offset += chunk.bytesConsumed();
+        }
+        assertEquals(text, result.toString());
+    }
+
+    /**
+     * 测试使用声明的字符集解码
+     */
+    @Test
+    public void testDecodesDeclaredCharset() throws IOException {
+        TextBufferPool pool = new TextBufferPool(1024, 1);
+        byte[] latin1 = "café".getBytes(StandardCharsets.ISO_8859_1);
+        TextBufferPool.TextChunk chunk = pool.read(new ByteArrayInputStream(latin1),
+                TextBufferPool.charsetOf("text/plain; charset=ISO-8859-1"), true);
+        assertEquals("café", chunk.text());
+        assertEquals(latin1.length, chunk.bytesConsumed());
+    }
+
+    /**
+     * 测试Content-Type中字符集参数的解析
+     */
+    @Test
+    public void testCharsetOf() {
+        assertEquals(StandardCharsets.UTF_8, TextBufferPool.charsetOf(null));
+        assertEquals(StandardCharsets.UTF_8, TextBufferPool.charsetOf("application/json"));
+        assertEquals(StandardCharsets.UTF_16LE, TextBufferPool.charsetOf("text/plain;charset=\"utf-16le\""));
+        assertEquals(StandardCharsets.ISO_8859_1, TextBufferPool.charsetOf("text/csv; Charset=ISO-8859-1; header=present"));
+        assertEquals(StandardCharsets.UTF_8, TextBufferPool.charsetOf("text/plain; charset=no-such-charset"));
+    }
+
+    /**
+     * 测试复用池化缓冲区：每次读取只分配返回的字符串，不再分配字节和字符缓冲区
+     */
+    @Test
+    public void testReadAllocationBounded() throws IOException {
+        int maxBytes = 256 * 1024;
+        TextBufferPool pool = new TextBufferPool(maxBytes, 1);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long length = 0;
+        for (int i = 0; i < 20; i++) {
+            length += pool.read(new AsciiStream(maxBytes), StandardCharsets.UTF_8, true).text().length();
+        }
+
+        int reads = 50;
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < reads; i++) {
+            length += pool.read(new AsciiStream(maxBytes), StandardCharsets.UTF_8, true).text().length();
+        }
+        long perRead = (threads.getThreadAllocatedBytes(threadId) - before) / reads;
+        assertEquals(70L * maxBytes, length);
+        // 返回的Latin-1字符串约占maxBytes字节；未复用缓冲区时每次还要分配maxBytes字节和2*maxBytes字节的字符数组
+        assertTrue(perRead < maxBytes + maxBytes / 4, "每次读取分配过多: " + perRead + " bytes");
+    }
+
+    /**
+     * 不分配内存地生成指定长度ASCII内容的输入流
+     */
+    private static final class AsciiStream extends InputStream {
+
+        private int remaining;
+
+        AsciiStream(int length) {
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() {
+            if (remaining == 0) {
+                return -1;
+            }
+            remaining--;
+            return 'a';
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (remaining == 0) {
+                return -1;
+            }
+            int count = Math.min(length, remaining);
+            Arrays.fill(buffer, offset, offset + count, (byte) 'a');
+            remaining -= count;
+            return count;
+        }
+    }
+}
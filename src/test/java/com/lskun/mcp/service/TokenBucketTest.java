@@ -0,0 +1,126 @@
+package com.lskun.mcp.service;
+
+import com.lskun.mcp.config.BandwidthProperties;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 令牌桶限速与传输调度器测试类（不需要访问R2）
+ */
+public class TokenBucketTest {
+
+    /**
+     * 测试突发容量用尽后按速率等待
+     */
+    @Test
+    public void testRateLimit() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(TokenBucket.MIN_BURST_BYTES);
+        assertTrue(bucket.acquire(TokenBucket.MIN_BURST_BYTES, TokenBucket.Priority.BULK) < TimeUnit.MILLISECONDS.toNanos(50),
+                "突发容量内应立即获得令牌");
+        long waited = bucket.acquire(TokenBucket.MIN_BURST_BYTES / 4, TokenBucket.Priority.BULK);
+        assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(200), "四分之一秒的流量应等待约250毫秒，实际: " + waited);
+    }
+
+    /**
+     * 测试未限速及运行时解除限速会立即放行等待者
+     */
+    @Test
+    public void testUnlimitedAndRuntimeChange() throws Exception {
+        TokenBucket unlimited = new TokenBucket(0);
+        assertTrue(unlimited.acquire(Long.MAX_VALUE, TokenBucket.Priority.BULK) < TimeUnit.MILLISECONDS.toNanos(50));
+
+        TokenBucket bucket = new TokenBucket(1024);
+        bucket.acquire(TokenBucket.MIN_BURST_BYTES, TokenBucket.Priority.BULK);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // 按1KB/s需要等待约一分钟，解除限速后应立即返回
+            Future<Long> waiting = executor.submit(() -> bucket.acquire(TokenBucket.MIN_BURST_BYTES, TokenBucket.Priority.BULK));
+            Thread.sleep(100);
+            bucket.setBytesPerSecond(0);
+            assertTrue(waiting.get(5, TimeUnit.SECONDS) < TimeUnit.SECONDS.toNanos(5));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 测试有交互请求等待时，批量请求让出令牌
+     */
+    @Test
+    public void testInteractivePriority() throws Exception {
+        TokenBucket bucket = new TokenBucket(TokenBucket.MIN_BURST_BYTES);
+        bucket.acquire(TokenBucket.MIN_BURST_BYTES, TokenBucket.Priority.BULK);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch interactiveStarted = new CountDownLatch(1);
+            Future<Long> interactive = executor.submit(() -> {
+                interactiveStarted.countDown();
+                bucket.acquire(TokenBucket.MIN_BURST_BYTES / 2, TokenBucket.Priority.INTERACTIVE);
+                return System.nanoTime();
+            });
+            interactiveStarted.await();
+            Thread.sleep(20);
+            Future<Long> bulk = executor.submit(() -> {
+                bucket.acquire(1024, TokenBucket.Priority.BULK);
+                return System.nanoTime();
+            });
+            assertTrue(interactive.get(5, TimeUnit.SECONDS) < bulk.get(5, TimeUnit.SECONDS),
+                    "批量请求只需要很少的令牌，但应排在等待中的交互请求之后");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 测试调度器的请求分类、运行时修改限速与统计
+     */
+    @Test
+    public void testSchedulerLimitsAndStats() throws InterruptedException {
+        BandwidthProperties properties = new BandwidthProperties();
+        properties.getBucketBytesPerSecond().put("logs", 2048L);
+        TransferScheduler scheduler = new TransferScheduler(properties);
+
+        assertEquals(TokenBucket.Priority.INTERACTIVE, scheduler.classify(1024));
+        assertEquals(TokenBucket.Priority.BULK, scheduler.classify(64L * 1024 * 1024));
+
+        scheduler.setBandwidthLimit(null, 10_000_000L);
+        scheduler.setBandwidthLimit("backups", 4096L);
+        assertThrows(IllegalArgumentException.class, () -> scheduler.setBandwidthLimit("logs", -1L));
+
+        scheduler.acquire("logs", 1000, TokenBucket.Priority.INTERACTIVE);
+        TransferScheduler.BandwidthStats stats = scheduler.getBandwidthStats();
+        assertEquals(10_000_000L, stats.globalBytesPerSecond());
+        assertEquals(2048L, stats.bucketBytesPerSecond().get("logs"));
+        assertEquals(4096L, stats.bucketBytesPerSecond().get("backups"));
+        assertEquals(1000, stats.queues().get("interactive").bytes());
+        assertEquals(0, stats.queues().get("bulk").bytes());
+    }
+
+    /**
+     * 测试传输中途设置的限速对已开始的对象体立即生效
+     */
+    @Test
+    public void testLimitAppliesToRunningTransfer() throws IOException {
+        TransferScheduler scheduler = new TransferScheduler(new BandwidthProperties());
+        int length = 4 * 1024 * 1024;
+        try (InputStream body = scheduler.throttle(new ByteArrayInputStream(new byte[length]), "backups", length)) {
+            assertEquals(1024 * 1024, body.readNBytes(1024 * 1024).length);
+            assertEquals(0, scheduler.getBandwidthStats().queues().get("bulk").bytes(), "未限速时不占用令牌");
+
+            scheduler.setBandwidthLimit("backups", 100_000_000L);
+            assertEquals(length - 1024 * 1024, body.readAllBytes().length);
+        }
+        assertEquals(length - 1024 * 1024, scheduler.getBandwidthStats().queues().get("bulk").bytes());
+    }
+}
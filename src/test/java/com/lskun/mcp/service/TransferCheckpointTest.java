@@ -0,0 +1,91 @@
+package com.lskun.mcp.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 续传检查点读写与字节范围计算测试类（不需要访问R2）
+ */
+public class TransferCheckpointTest {
+
+    /**
+     * 测试乱序完成的范围会被合并，并正确计算缺失范围
+     */
+    @Test
+    public void testRangeMergingAndMissingRanges() {
+        TransferCheckpoint checkpoint = new TransferCheckpoint("download-0000000000000000", TransferCheckpoint.DOWNLOAD,
+                "default", "bucket", "big.bin", "/tmp/big.bin", 100, 20);
+        checkpoint.addRange(40, 60);
+        checkpoint.addRange(0, 20);
+        checkpoint.addRange(20, 40);
+        checkpoint.addRange(80, 90);
+
+        List<long[]> completed = checkpoint.getCompletedRanges();
+        assertEquals(2, completed.size());
+        assertArrayEquals(new long[]{0, 60}, completed.get(0));
+        assertArrayEquals(new long[]{80, 90}, completed.get(1));
+        assertEquals(70, checkpoint.getCompletedBytes());
+
+        List<long[]> missing = checkpoint.missingRanges(15);
+        assertEquals(3, missing.size());
+        assertArrayEquals(new long[]{60, 75}, missing.get(0));
+        assertArrayEquals(new long[]{75, 80}, missing.get(1));
+        assertArrayEquals(new long[]{90, 100}, missing.get(2));
+    }
+
+    /**
+     * 测试上传检查点的已完成字节数（最后一个分段可能较短）
+     */
+    @Test
+    public void testUploadCompletedBytes() {
+        TransferCheckpoint checkpoint = new TransferCheckpoint("upload-0000000000000000", TransferCheckpoint.UPLOAD,
+                "default", "bucket", "big.bin", "/tmp/big.bin", 250, 100);
+        checkpoint.putPart(1, "\"a\"");
+        checkpoint.putPart(3, "\"c\"");
+        assertEquals(150, checkpoint.getCompletedBytes());
+    }
+
+    /**
+     * 测试检查点写入后可完整读回，损坏的文件被视为不存在
+     */
+    @Test
+    public void testWriteAndRead(@TempDir Path dir) throws IOException {
+        TransferCheckpoint checkpoint = new TransferCheckpoint("download-0123456789abcdef", TransferCheckpoint.DOWNLOAD,
+                "archive", "bucket", "big.bin", "/tmp/big.bin", 100, 20);
+        checkpoint.setETag("\"etag\"");
+        checkpoint.addRange(0, 40);
+        Path file = dir.resolve("nested").resolve(checkpoint.getId() + ".json");
+        checkpoint.write(file);
+
+        TransferCheckpoint read = TransferCheckpoint.read(file);
+        assertNotNull(read);
+        assertEquals("archive", read.getProfile());
+        assertEquals("\"etag\"", read.getETag());
+        assertEquals(40, read.getCompletedBytes());
+        assertNotNull(read.getUpdatedAt());
+
+        Files.writeString(file, "{not json");
+        assertNull(TransferCheckpoint.read(file));
+        assertNull(TransferCheckpoint.read(dir.resolve("missing.json")));
+    }
+
+    /**
+     * 测试检查点ID对同一传输稳定，对不同目标不同
+     */
+    @Test
+    public void testCheckpointId() {
+        String id = ResumableTransfers.checkpointId(TransferCheckpoint.UPLOAD, "default", "bucket", "a.bin", Paths.get("/tmp/a.bin"));
+        assertTrue(id.matches("upload-[0-9a-f]{16}"));
+        assertEquals(id, ResumableTransfers.checkpointId(TransferCheckpoint.UPLOAD, "default", "bucket", "a.bin", Paths.get("/tmp/a.bin")));
+        assertNotEquals(id, ResumableTransfers.checkpointId(TransferCheckpoint.UPLOAD, "default", "bucket", "b.bin", Paths.get("/tmp/a.bin")));
+        assertEquals(Paths.get("/tmp/a.bin.part"), ResumableTransfers.partialFile(Paths.get("/tmp/a.bin")));
+    }
+}
@@ -0,0 +1,76 @@
+package com.lskun.mcp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InterruptedIOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TransferJob状态流转与进度计算测试类（不需要访问R2）
+ */
+public class TransferJobTest {
+
+    /**
+     * 测试运行中任务的百分比、速率与剩余时间计算
+     */
+    @Test
+    public void testProgressAndEta() {
+        TransferJob job = newJob();
+        R2TransferJobService.JobStatus queued = job.status();
+        assertEquals("queued", queued.state());
+        assertNull(queued.totalBytes());
+        assertNull(queued.bytesPerSecond());
+
+        assertTrue(job.start());
+        job.setTotalBytes(1000);
+        job.addBytes(250);
+        long startNanos = System.nanoTime();
+        R2TransferJobService.JobStatus running = job.status(startNanos + 1_000_000_000L);
+        assertEquals("running", running.state());
+        assertEquals(25.0, running.percent());
+        assertNotNull(running.bytesPerSecond());
+        assertTrue(running.bytesPerSecond() > 0 && running.bytesPerSecond() <= 250);
+        assertNotNull(running.etaSeconds());
+        assertTrue(running.etaSeconds() >= 3, "剩余750字节，速率不超过250字节/秒");
+
+        job.addBytes(750);
+        job.succeed("\"etag\"");
+        R2TransferJobService.JobStatus done = job.status();
+        assertEquals("succeeded", done.state());
+        assertEquals(100.0, done.percent());
+        assertNull(done.etaSeconds());
+        assertNotNull(done.finishedAt());
+        assertFalse(job.cancel(), "已完成的任务不能取消");
+    }
+
+    /**
+     * 测试排队中被取消的任务不会再开始运行
+     */
+    @Test
+    public void testCancelBeforeStart() {
+        TransferJob job = newJob();
+        assertTrue(job.cancel());
+        assertFalse(job.start());
+        assertEquals("cancelled", job.status().state());
+        assertThrows(InterruptedIOException.class, job::checkCancelled);
+    }
+
+    /**
+     * 测试取消后的失败不会覆盖取消状态
+     */
+    @Test
+    public void testFailureAfterCancelKeepsCancelledState() {
+        TransferJob job = newJob();
+        assertTrue(job.start());
+        assertTrue(job.cancel());
+        job.fail("connection reset");
+        R2TransferJobService.JobStatus status = job.status();
+        assertEquals("cancelled", status.state());
+        assertNull(status.error());
+    }
+
+    private static TransferJob newJob() {
+        return new TransferJob("job-1", TransferJob.Type.UPLOAD, "default", "bucket", "key.bin", "/tmp/key.bin");
+    }
+}
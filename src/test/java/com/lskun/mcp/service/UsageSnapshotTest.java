@@ -0,0 +1,126 @@
+package com.lskun.mcp.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UsageSnapshot与PrefixUsageStats测试类（不需要访问R2）
+ */
+public class UsageSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * 测试统计累加与直方图分桶
+     */
+    @Test
+    public void testAccumulateStats() {
+        PrefixUsageStats stats = new PrefixUsageStats();
+        stats.add(100, Instant.parse("2025-01-15T10:00:00Z"));
+        stats.add(2L << 20, Instant.parse("2025-03-01T00:00:00Z"));
+        stats.add(2L << 30, Instant.parse("2025-03-20T00:00:00Z"));
+
+        assertEquals(3, stats.getObjectCount());
+        assertEquals(100 + (2L << 20) + (2L << 30), stats.getTotalBytes());
+        assertEquals(Instant.parse("2025-03-20T00:00:00Z").toEpochMilli(), stats.getLastModifiedWatermark());
+        assertEquals(1L, stats.sizeHistogramByLabel().get("<1KB"));
+        assertEquals(1L, stats.sizeHistogramByLabel().get("<16MB"));
+        assertEquals(1L, stats.sizeHistogramByLabel().get(">=1GB"));
+        assertEquals(2L, stats.getMonthHistogram().get("2025-03"));
+    }
+
+    /**
+     * 测试快照写入后可以完整读回
+     */
+    @Test
+    public void testSnapshotRoundTrip() throws Exception {
+        PrefixUsageStats stats = new PrefixUsageStats();
+        stats.add(4096, Instant.parse("2025-02-01T00:00:00Z"));
+        stats.setListedAt(1234L);
+
+        UsageSnapshot snapshot = new UsageSnapshot("bucket", "logs/");
+        snapshot.getPrefixes().put("logs/2025/", stats);
+        Path file = tempDir.resolve("snapshot.json.gz");
+        snapshot.write(file);
+
+        UsageSnapshot loaded = UsageSnapshot.read(file);
+        assertNotNull(loaded, "快照应能读回");
+        assertEquals("logs/", loaded.getPrefix());
+        PrefixUsageStats loadedStats = loaded.getPrefixes().get("logs/2025/");
+        assertEquals(1, loadedStats.getObjectCount());
+        assertEquals(4096, loadedStats.getTotalBytes());
+        assertEquals(1234L, loadedStats.getListedAt());
+        assertEquals(1L, loadedStats.getMonthHistogram().get("2025-02"));
+    }
+
+    /**
+     * 测试损坏的快照文件被视为不存在
+     */
+    @Test
+    public void testCorruptSnapshotIgnored() throws Exception {
+        Path file = tempDir.resolve("broken.json.gz");
+        Files.writeString(file, "not gzip");
+        assertNull(UsageSnapshot.read(file));
+        assertNull(UsageSnapshot.read(tempDir.resolve("missing.json.gz")));
+    }
+
+    /**
+     * 测试基于lastModified水位线的新鲜度判断
+     */
+    @Test
+    public void testFreshnessUsesWatermark() {
+        R2UsageService service = new R2UsageService(null, tempDir.toString(), 1, 60, 2);
+        long now = System.currentTimeMillis();
+
+        // 刚被写入过的前缀：超过max-age后过期
+        PrefixUsageStats hot = new PrefixUsageStats();
+        hot.setListedAt(now - Duration.ofMinutes(90).toMillis());
+        hot.setLastModifiedWatermark(hot.getListedAt() - Duration.ofMinutes(1).toMillis());
+        assertFalse(service.isFresh(hot, now));
+
+        // 长期未变更的前缀：在冷数据上限内仍然新鲜
+        PrefixUsageStats cold = new PrefixUsageStats();
+        cold.setListedAt(now - Duration.ofMinutes(90).toMillis());
+        cold.setLastModifiedWatermark(cold.getListedAt() - Duration.ofDays(30).toMillis());
+        assertTrue(service.isFresh(cold, now));
+
+        // 无论静默多久，都不超过冷数据上限
+        cold.setListedAt(now - Duration.ofHours(3).toMillis());
+        assertFalse(service.isFresh(cold, now));
+        service.shutdown();
+    }
+
+    /**
+     * 测试报告给出每个前缀的列举时间与数据年龄，以及最旧的列举时间
+     */
+    @Test
+    public void testReportShowsListingAge() {
+        long now = System.currentTimeMillis();
+        UsageSnapshot snapshot = new UsageSnapshot("bucket", "logs/");
+        PrefixUsageStats direct = new PrefixUsageStats();
+        direct.setListedAt(now);
+        snapshot.getPrefixes().put(R2UsageService.DIRECT_OBJECTS, direct);
+        PrefixUsageStats reused = new PrefixUsageStats();
+        reused.add(100, Instant.ofEpochMilli(now - Duration.ofDays(30).toMillis()));
+        reused.setListedAt(now - Duration.ofMinutes(45).toMillis());
+        snapshot.getPrefixes().put("logs/2024/", reused);
+
+        R2UsageService.UsageReport report = R2UsageService.toReport(snapshot, Set.of(), now, 5);
+        assertEquals(1, report.reusedPrefixes());
+        R2UsageService.PrefixUsage usage = report.prefixes().get(0);
+        assertEquals("logs/2024/", usage.prefix());
+        assertEquals(Instant.ofEpochMilli(reused.getListedAt()).toString(), usage.listedAt());
+        assertEquals(45 * 60, usage.ageSeconds());
+        assertEquals(usage.listedAt(), report.oldestListedAt());
+        assertEquals(45 * 60, report.maxAgeSeconds());
+    }
+}